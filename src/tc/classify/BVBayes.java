@@ -6,9 +6,20 @@ import tc.evaluation.*;
 import tc.induction.MakeProbabilityModel;
 import tc.util.*;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
 import java.util.Set;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * Naive Bayes classifier for documents represented as Boolean vectors. This
@@ -33,12 +44,26 @@ import java.util.Iterator;
  *  corpus_list: list of files to be classified
  * 
  *  categ: target category (e.g. 'acq'.) The classifier will define CSV 
- *         as CSV_{categ}
+ *         as CSV_{categ}. If categ is '_ALL', each news item is
+ *         categorised according to every category in the model
+ *         (parsing and tokenising it only once), and the effectiveness
+ *         for each category is printed, followed by its micro- and
+ *         macro-average over all categories.
  * 
  *  pmfile: file containing a  probability model generated via, say, 
  *          tc.induction.MakeProbabilityModel.
+ * 
+ *  threads: number of threads on which to compute CSVs, or 'virtual' to
+ *          compute them on virtual threads (where supported). By default,
+ *          CSVs are computed on the thread that parses corpus_list.
  * </pre>
  * 
+ * A BVBayes object may classify news items on several threads at once: the
+ * model is only read, the weights compiled for each category are cached in a
+ * concurrent map, and CSVs are stored into CSVTables, which are concurrent.
+ * See classifyCorpus() and classify() for classifying batches of news items
+ * on an executor.
+ * 
  * @author
  * @version <font size=-1>$Id: BVBayes.java,v 1.2 2004/03/29 14:29:33 luzs Exp
  *          $</font>
@@ -47,19 +72,33 @@ import java.util.Iterator;
  */
 
 public class BVBayes {
-	private static CorpusList clist = null;
-	private static ProbabilityModel pm = null;
+	private CorpusList clist = null;
+	private ProbabilityModel pm = null;
+	/** weights compiled for each category so far */
+	private ConcurrentHashMap<String, CategoryWeights> weights = new ConcurrentHashMap<String, CategoryWeights>();
+	/** number of news items scored by each task submitted to an executor */
+	static final int BATCH_SIZE = 64;
+	/** most batches waiting to be scored at a time */
+	static final int MAX_PENDING = 256;
 
 	/**
 	 * Set up the main user interface items
 	 */
 	public BVBayes(String clist, String pmfile) {
-		super();
-		this.clist = new CorpusList(clist);
-		this.pm = IOUtil.loadProbabilityModel(pmfile);
+		this(new CorpusList(clist), IOUtil.loadProbabilityModel(pmfile));
 		System.err.println("Probability model loaded successfully\n");
 	}
 
+	public BVBayes(CorpusList clist, ProbabilityModel pm) {
+		super();
+		this.clist = clist;
+		this.pm = pm;
+	}
+
+	public ProbabilityModel getProbabilityModel() {
+		return pm;
+	}
+
 	/**
 	 * parseNews: Set up parser object, perform parsing, and print indented
 	 * contents onto stdout (for test purposes only)
@@ -70,6 +109,270 @@ public class BVBayes {
 		return np.getParsedText();
 	}
 
+	/**
+	 * classifyNews: parse filename and store the CSV (and true
+	 * categories) of each news item into csvt as soon as it is read, so
+	 * that only one news item is held in memory at a time
+	 */
+	public void classifyNews(String filename, String cat, CSVTable csvt) {
+		CorpusCache.parse(filename, getScorer(cat, csvt));
+	}
+
+	/**
+	 * Return a listener which stores the CSV for cat (and the true
+	 * categories) of each news item it receives into csvt. It may be called
+	 * by several threads at once.
+	 */
+	public NewsItemListener getScorer(String cat, final CSVTable csvt) {
+		final CategoryWeights w = getWeights(cat);
+		return new NewsItemListener() {
+			public void newsItem(ParsedNewsItem pni) {
+				csvt.setCSV(pni.getId(), w.computeCSV(pni));
+				csvt.setOrigcat(pni.getId(), pni.getCategVector());
+			}
+		};
+	}
+
+	/**
+	 * classifyNews: parse filename and store the CSV of each news item for
+	 * category weights[k].getCategory() (and its true categories) into
+	 * csvts[k], for every k. Each news item is tokenised, and its terms
+	 * looked up in the model, only once.
+	 */
+	public void classifyNews(String filename, CategoryWeights[] weights,
+			CSVTable[] csvts) {
+		CorpusCache.parse(filename, getScorer(weights, csvts));
+	}
+
+	/**
+	 * Return a listener which stores the CSV of each news item it receives
+	 * for category weights[k].getCategory() (and its true categories) into
+	 * csvts[k], for every k. It may be called by several threads at once.
+	 */
+	public NewsItemListener getScorer(final CategoryWeights[] weights,
+			final CSVTable[] csvts) {
+		return new NewsItemListener() {
+			public void newsItem(ParsedNewsItem pni) {
+				double[] csvs = new double[weights.length];
+				computeCSVs(weights, pni, csvs);
+				for (int k = 0; k < weights.length; k++) {
+					csvts[k].setCSV(pni.getId(), csvs[k]);
+					csvts[k].setOrigcat(pni.getId(), pni.getCategVector());
+				}
+			}
+		};
+	}
+
+	/**
+	 * Store the CSV of pni for category weights[k].getCategory() into
+	 * csvs[k], for every k, tokenising pni and looking its terms up in the
+	 * model only once
+	 */
+	public void computeCSVs(CategoryWeights[] weights, ParsedNewsItem pni,
+			double[] csvs) {
+		BagOfWords bag = new BagOfWords(pni);
+		// ids of the terms of pni which are in the model (the others weigh
+		// nothing)
+		int[] terms = new int[bag.size()];
+		int n = 0;
+		for (int i = 0; i < bag.size(); i++) {
+			int t = pm.getTermId(bag.getTerm(i));
+			if (t >= 0)
+				terms[n++] = t;
+		}
+		for (int k = 0; k < weights.length; k++)
+			csvs[k] = weights[k].computeCSV(terms, n);
+	}
+
+	/**
+	 * Parse each file in clist (on the calling thread) and pass its news
+	 * items to scorer (see getScorer()), in batches run on executor, or on
+	 * the calling thread if executor is null. Return once every news item
+	 * has been scored.
+	 */
+	public void classifyCorpus(NewsItemListener scorer, ExecutorService executor)
+			throws InterruptedException, ExecutionException {
+		if (executor == null) {
+			for (Object file : clist)
+				CorpusCache.parse((String) file, scorer);
+			return;
+		}
+		BatchListener bl = new BatchListener(scorer, executor);
+		for (Object file : clist)
+			CorpusCache.parse((String) file, bl);
+		bl.finish();
+	}
+
+	/**
+	 * Store the CSV for cat of each news item in items into csvt, scoring
+	 * them in batches on executor, and return once all have been scored.
+	 */
+	public void classify(Iterator<ParsedNewsItem> items, String cat,
+			CSVTable csvt, ExecutorService executor)
+			throws InterruptedException, ExecutionException {
+		BatchListener bl = new BatchListener(getScorer(cat, csvt), executor);
+		while (items.hasNext())
+			bl.newsItem(items.next());
+		bl.finish();
+	}
+
+	public void classify(Collection<ParsedNewsItem> items, String cat,
+			CSVTable csvt, ExecutorService executor)
+			throws InterruptedException, ExecutionException {
+		classify(items.iterator(), cat, csvt, executor);
+	}
+
+	/**
+	 * Return an executor which runs tasks on the given number of (platform)
+	 * threads or, if threads is 0, on a new virtual thread per task. Virtual
+	 * threads need Java 21 or later; on older JVMs, one platform thread per
+	 * available processor is used instead.
+	 */
+	public static ExecutorService newExecutor(int threads) {
+		if (threads > 0)
+			return Executors.newFixedThreadPool(threads);
+		try {
+			Method m = Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) m.invoke(null);
+		} catch (Exception e) {
+			int n = Runtime.getRuntime().availableProcessors();
+			System.err.println("Virtual threads are not available; using " + n
+					+ " platform thread(s)");
+			return Executors.newFixedThreadPool(n);
+		}
+	}
+
+	/**
+	 * Collect the news items it receives into batches of BATCH_SIZE, and
+	 * pass each batch to scorer on executor. At most MAX_PENDING batches are
+	 * queued at a time, so that items are not read much faster than they
+	 * can be scored.
+	 */
+	private static class BatchListener implements NewsItemListener {
+		private NewsItemListener scorer;
+		private ExecutorService executor;
+		private ArrayList<ParsedNewsItem> batch = new ArrayList<ParsedNewsItem>(
+				BATCH_SIZE);
+		private LinkedList<Future<?>> pending = new LinkedList<Future<?>>();
+		private Semaphore slots = new Semaphore(MAX_PENDING);
+
+		BatchListener(NewsItemListener scorer, ExecutorService executor) {
+			this.scorer = scorer;
+			this.executor = executor;
+		}
+
+		public void newsItem(ParsedNewsItem pni) {
+			batch.add(pni);
+			if (batch.size() == BATCH_SIZE)
+				submit();
+		}
+
+		private void submit() {
+			final ArrayList<ParsedNewsItem> b = batch;
+			batch = new ArrayList<ParsedNewsItem>(BATCH_SIZE);
+			slots.acquireUninterruptibly();
+			pending.add(executor.submit(new Runnable() {
+				public void run() {
+					try {
+						for (int i = 0; i < b.size(); i++)
+							scorer.newsItem(b.get(i));
+					} finally {
+						slots.release();
+					}
+				}
+			}));
+		}
+
+		/**
+		 * Submit the last (partial) batch and wait for all batches to be
+		 * scored
+		 */
+		void finish() throws InterruptedException, ExecutionException {
+			if (!batch.isEmpty())
+				submit();
+			while (!pending.isEmpty())
+				pending.removeFirst().get();
+		}
+	}
+
+	/**
+	 * Categorise every news item in clist according to every category in the
+	 * model (on executor, if it isn't null), and print the effectiveness for
+	 * each category, and averaged over all categories
+	 */
+	public void classifyAll(ThresholdStrategy tstrategy,
+			ExecutorService executor) throws InterruptedException,
+			ExecutionException {
+		CategoryWeights[] weights = getAllWeights();
+		String[] cats = new String[weights.length];
+		CSVTable[] csvts = new CSVTable[cats.length];
+		for (int k = 0; k < cats.length; k++) {
+			cats[k] = weights[k].getCategory();
+			csvts[k] = new CSVTable(cats[k]);
+		}
+		classifyCorpus(getScorer(weights, csvts), executor);
+		for (int k = 0; k < cats.length; k++)
+			if (tstrategy.proportional)
+				csvts[k].applyProportionalThreshold(pm
+						.getCatGenerality(cats[k]));
+			else
+				csvts[k].applyUCutThreshold(tstrategy.threshold);
+		printEffectiveness(csvts);
+	}
+
+	/**
+	 * Print accuracy, precision and recall for each table in csvts, then
+	 * their micro-averages (computed from the sum of the tables' contingency
+	 * tables) and macro-averages (the means of the per-category values, over
+	 * the categories for which they are defined)
+	 */
+	public static void printEffectiveness(CSVTable[] csvts) {
+		int[] micro = new int[4];
+		double[] macro = new double[3];
+		int[] defined = new int[3];
+		System.out.println("Classification results for " + csvts.length
+				+ " categories");
+		System.out.println("EFFECTIVENESS:");
+		for (int k = 0; k < csvts.length; k++) {
+			int[] ct = csvts[k].getContingencyTable();
+			double[] e = effectiveness(ct);
+			System.out.println("  " + csvts[k].getCategory() + ": "
+					+ effectivenessString(e) + "  (TP:FP = " + ct[0] + ":"
+					+ ct[1] + ")");
+			for (int i = 0; i < micro.length; i++)
+				micro[i] += ct[i];
+			for (int i = 0; i < macro.length; i++)
+				if (!Double.isNaN(e[i])) {
+					macro[i] += e[i];
+					defined[i]++;
+				}
+		}
+		for (int i = 0; i < macro.length; i++)
+			macro[i] = defined[i] == 0 ? Double.NaN : macro[i] / defined[i];
+		System.out.println("MICRO-AVERAGE:\n  "
+				+ effectivenessString(effectiveness(micro)));
+		System.out.println("MACRO-AVERAGE:\n  " + effectivenessString(macro)
+				+ "  (precision over " + defined[1] + " categories)");
+	}
+
+	/**
+	 * @return {accuracy, precision, recall} given a contingency table {TP,
+	 *         FP, FN, TN} (as CSVTable computes them)
+	 */
+	private static double[] effectiveness(int[] ct) {
+		return new double[] {
+				(double) (ct[0] + ct[3])
+						/ (double) (ct[0] + ct[1] + ct[2] + ct[3]),
+				(double) ct[0] / (double) (ct[0] + ct[1]),
+				(double) ct[0] / (double) (ct[0] + ct[2]) };
+	}
+
+	private static String effectivenessString(double[] e) {
+		return "accuracy = " + e[0] + "  precision = " + e[1] + "  recall = "
+				+ e[2];
+	}
+
 	/**
 	 * CSV_i(d_j) = \sum_0^T tkj log p(t|c) * (1 - p(t|�c) / p(t|�c) * (1 -
 	 * p(t|c)
@@ -83,24 +386,67 @@ public class BVBayes {
 	 * employed here to correct this distortion. A simpler approach would be to
 	 * base the probability model on term events rather than document events, as
 	 * described in (Mitchell 97, ch 6).
+	 * 
+	 * The CSV is computed as the sum of the weights of the terms of pni in
+	 * the CategoryWeights for cat, compiled from the model when cat is first
+	 * asked for (see computeCSVByTerm() for the same computation done term by
+	 * term).
 	 */
 	public double computeCSV(String cat, ParsedNewsItem pni) {
+		return getWeights(cat).computeCSV(pni);
+	}
+
+	/**
+	 * @return the term weights for every category in the model, sorted by
+	 *         category name
+	 */
+	public CategoryWeights[] getAllWeights() {
+		String[] cats = pm.getCategorySet().toArray(new String[0]);
+		Arrays.sort(cats);
+		CategoryWeights[] weights = new CategoryWeights[cats.length];
+		for (int k = 0; k < cats.length; k++)
+			weights[k] = getWeights(cats[k]);
+		return weights;
+	}
+
+	/**
+	 * @return the term weights for cat, compiling them the first time cat is
+	 *         asked for
+	 */
+	public CategoryWeights getWeights(String cat) {
+		CategoryWeights w = weights.get(cat);
+		if (w == null) {
+			// two threads may compile the same weights, but they'll be equal
+			w = new CategoryWeights(pm, cat);
+			CategoryWeights cw = weights.putIfAbsent(cat, w);
+			if (cw != null)
+				w = cw;
+		}
+		return w;
+	}
+
+	/**
+	 * Compute the CSV of pni (as computeCSV() does) by looking the counts of
+	 * each term of pni up in the model
+	 */
+	public double computeCSVByTerm(String cat, ParsedNewsItem pni) {
 		/**
 		 * ******************** Lab 04: Exercise ********************* implement
 		 * the CSV as specified above.
 		 */
-		BagOfWords word_map = new BagOfWords(pni.getText());
+		BagOfWords word_map = new BagOfWords(pni);
 		double csv = 0.0;
-		for (Object words : word_map.keySet()) {
-			Probabilities probs = pm.getProbabilities((String) words, cat);
-			Integer ti = 0;
-			if (word_map.keySet().contains((String) words))
-				ti = 1;
+		// reused for every term
+		Counts counts = new Counts();
+		for (int i = 0; i < word_map.size(); i++) {
+			pm.getCounts(word_map.getTerm(i), cat, counts);
+			// every term in word_map occurs in pni
+			int ti = 1;
 			// consider p(a|b) = p(a^b)/p(b)
-			Double p_TgivenC = (double) probs.tc / (double) probs.c;
-			Double p_TgivenNotC = (double) probs.tnc / (double) (1 - probs.c);
+			double p_TgivenC = counts.getPTgivenC();
+			double p_TgivenNotC = counts.getPTgiven_C();
 			csv += ti
-					* (double) Maths.safeLog2((p_TgivenC * (1 - p_TgivenNotC))
+					* Maths.safeLog2((p_TgivenC * (1 - p_TgivenNotC))
 							/ (p_TgivenNotC * (1 - p_TgivenC)));
 		}
 		return csv;
@@ -131,19 +477,25 @@ public class BVBayes {
 			 * 
 			 * N.B.: this file won't compile unless CSVTable is implemented.
 			 */
+			ExecutorService executor = null;
+			if (args.length > 4)
+				executor = newExecutor(args[4].equals("virtual") ? 0 : Integer
+						.parseInt(args[4]));
 			BVBayes bayes = new BVBayes(clistfn, pmfile);
-			for (Object file : clist) {
-				ParsedText pt = bayes.parseNews((String) file);
-				for (Iterator i = pt.iterator(); i.hasNext();) {
-					ParsedNewsItem pni = (ParsedNewsItem) i.next();
-					double csv = bayes.computeCSV(category, pni);
-					csvt.setCSV(pni.getId(), csv);
-					csvt.setOrigcat(pni.getId(), pni.getCategVector());
+			try {
+				if (category.equals("_ALL")) {
+					bayes.classifyAll(tstrategy, executor);
+					return;
 				}
+				bayes.classifyCorpus(bayes.getScorer(category, csvt), executor);
+			} finally {
+				if (executor != null)
+					executor.shutdown();
 			}
 
 			if (tstrategy.proportional)
-				csvt.applyProportionalThreshold(pm.getCatGenerality(category));
+				csvt.applyProportionalThreshold(bayes.pm
+						.getCatGenerality(category));
 			else
 				csvt.applyUCutThreshold(tstrategy.threshold);
 			System.out.println("Classification results for " + category);
@@ -153,7 +505,7 @@ public class BVBayes {
 		} catch (Exception e) {
 			System.err.println("USAGE:");
 			System.err
-					.println(" BVBayes corpus_list categ prob_model threshold\n");
+					.println(" BVBayes corpus_list categ prob_model threshold [threads]\n");
 			System.err.println("SYNOPSIS:");
 			System.err
 					.println("  Categorise each news item in corpus_list according to categ using");
@@ -164,7 +516,9 @@ public class BVBayes {
 					.println(" corpus_list: list of files to be classified\n");
 			System.err
 					.println(" categ: target category (e.g. 'acq'.) The classifier will define CSV ");
-			System.err.println("     as CSV_{categ}\n");
+			System.err.println("     as CSV_{categ}, or '_ALL' to categorise according to every");
+			System.err
+					.println("     category and print micro- and macro-averaged results\n");
 			System.err
 					.println(" pmfile: file containing a  probability model generated via, say, ");
 			System.err.println("     tc.induction.MakeProbabilityModel.\n");
@@ -175,6 +529,16 @@ public class BVBayes {
 			System.err
 					.println("      - 'proportional': choose threshold s.t. that g_Tr(ci) is");
 			System.err.println("         closest to g_Tv(ci). [DEFAULT]");
+			System.err
+					.println(" threads: number of threads on which to compute CSVs, or 'virtual'");
+			System.err
+					.println("     for virtual threads (Java 21 or later)");
+			System.err
+					.println(" (run with -Dtc.parser=scan to read corpus_list with the byte-level Reuters scanner,");
+			System.err
+					.println("  -Dtc.cache=off to bypass the pre-tokenised corpus cache, FILE.tok, or");
+			System.err
+					.println("  -Dtc.cache.dir=DIR to keep it in DIR)");
 			System.err.println(" ...");
 			e.printStackTrace();
 		}
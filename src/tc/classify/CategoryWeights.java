@@ -0,0 +1,89 @@
+package tc.classify;
+
+import tc.dstruct.BagOfWords;
+import tc.dstruct.Counts;
+import tc.dstruct.ParsedNewsItem;
+import tc.dstruct.ProbabilityModel;
+import tc.util.Maths;
+
+/**
+ * The Boolean vector Naive Bayes classifier for a single category, compiled
+ * from a ProbabilityModel: the weight
+ *
+ * <pre>
+ *  w(t) = log p(t|c) (1 - p(t|&#172;c)) / p(t|&#172;c) (1 - p(t|c))
+ * </pre>
+ *
+ * of each term of the model, indexed by term id. The weights depend on the
+ * model and the category only, so they are computed once, and the CSV of a
+ * document (see BVBayes.computeCSV()) is the sum of the weights of the terms
+ * it contains. The CSV as defined there has no document-independent part, so
+ * there is no bias to add to the sum.
+ *
+ * The weights are kept in double precision, so that the CSVs are exactly
+ * those computed term by term from the model.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see BVBayes
+ * @see ProbabilityModel
+ */
+public class CategoryWeights {
+
+	private ProbabilityModel pm;
+	private String category;
+	/** weights[t] = w(t), for term id t */
+	private double[] weights;
+
+	public CategoryWeights(ProbabilityModel pm, String category) {
+		this.pm = pm;
+		this.category = category;
+		int c = pm.getCategoryId(category);
+		weights = new double[pm.getTermSetSize()];
+		Counts counts = new Counts();
+		for (int t = 0; t < weights.length; t++) {
+			pm.getCounts(t, c, counts);
+			double p_TgivenC = counts.getPTgivenC();
+			double p_TgivenNotC = counts.getPTgiven_C();
+			weights[t] = Maths.safeLog2((p_TgivenC * (1 - p_TgivenNotC))
+					/ (p_TgivenNotC * (1 - p_TgivenC)));
+		}
+	}
+
+	public String getCategory() {
+		return category;
+	}
+
+	/**
+	 * @return the weight of term, or 0 if term is not in the model
+	 */
+	public double getWeight(String term) {
+		int t = pm.getTermId(term);
+		return t < 0 ? 0 : weights[t];
+	}
+
+	/**
+	 * @return the CSV of a document whose terms are in bag
+	 */
+	public double computeCSV(BagOfWords bag) {
+		double csv = 0.0;
+		for (int i = 0; i < bag.size(); i++)
+			csv += getWeight(bag.getTerm(i));
+		return csv;
+	}
+
+	/**
+	 * @return the CSV of a document whose terms have ids terms[0] to
+	 *         terms[n-1] (e.g. as looked up once for classifying the document
+	 *         against several categories)
+	 */
+	public double computeCSV(int[] terms, int n) {
+		double csv = 0.0;
+		for (int i = 0; i < n; i++)
+			csv += weights[terms[i]];
+		return csv;
+	}
+
+	public double computeCSV(ParsedNewsItem pni) {
+		return computeCSV(new BagOfWords(pni));
+	}
+}
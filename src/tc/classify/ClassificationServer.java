@@ -0,0 +1,348 @@
+package tc.classify;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tc.dstruct.ParsedNewsItem;
+import tc.dstruct.ProbabilityModel;
+import tc.parser.NewsItemListener;
+import tc.parser.ReutersScanner;
+import tc.util.IOUtil;
+import tc.util.LatencyHistogram;
+
+/**
+ * A resident Boolean vector Naive Bayes classifier: load one or more
+ * probability models once, compile the weights of all their categories, and
+ * classify documents sent over a line protocol on standard input or a local
+ * (loopback) socket, so that each document costs its classification only,
+ * rather than a JVM start-up and a model load.
+ *
+ * Usage:
+ *
+ * <pre>
+ *  ClassificationServer [-port port] [-threshold t] pmfile [pmfile ...]
+ *
+ *  port: TCP port on which to accept clients (0 for any free port); each
+ *          client is served on a thread of its own. By default, requests are
+ *          read from standard input and replies written to standard output.
+ *
+ *  t: UCut threshold on CSVs for hard decisions (default 0)
+ *
+ *  pmfile: probability model generated via, say,
+ *          tc.induction.MakeProbabilityModel, known to clients by its file
+ *          name without directory or extension
+ * </pre>
+ *
+ * Each request is a line, and each reply zero or more lines followed by a
+ * line holding only a full stop. Text is read and written in ISO-8859-1.
+ *
+ * <pre>
+ *  TEXT model categ id text      classify text (with identifier id)
+ *  XML model categ fragment      classify each REUTERS element in fragment
+ *  XML model categ               as above, for a fragment on the lines which
+ *                                follow, up to a line holding only a full stop
+ *  MODELS                        list the models loaded
+ *  STATS                         print counters and latency percentiles
+ *  QUIT                          close the connection
+ * </pre>
+ *
+ * where categ is a category of the model, or '_ALL' for all of them. For each
+ * document classified, the reply holds a line
+ *
+ * <pre>
+ *  id categ csv decision [categ csv decision ...]
+ * </pre>
+ *
+ * where decision is 1 if csv is at least the threshold, 0 otherwise. Failed
+ * requests are answered with a line starting with 'ERROR'.
+ *
+ * A fragment sent on several lines is framed like a reply, except that a
+ * line of the fragment starting with a full stop must be sent with another
+ * full stop in front of it (which is removed).
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see BVBayes
+ * @see LatencyHistogram
+ */
+public class ClassificationServer {
+
+	/** last line of each reply */
+	public static final String END = ".";
+	public static final String ALL = "_ALL";
+
+	private Map<String, BVBayes> models = new ConcurrentHashMap<String, BVBayes>();
+	/** weights for every category of each model, sorted by category */
+	private Map<String, CategoryWeights[]> allWeights = new ConcurrentHashMap<String, CategoryWeights[]>();
+	private double threshold;
+	private long started = System.nanoTime();
+	private AtomicLong requests = new AtomicLong();
+	private AtomicLong documents = new AtomicLong();
+	private AtomicLong errors = new AtomicLong();
+	/** latency of classification requests */
+	private LatencyHistogram latency = new LatencyHistogram();
+
+	public ClassificationServer(double threshold) {
+		super();
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Make pm available to clients as name, compiling the weights of all its
+	 * categories
+	 */
+	public void addModel(String name, ProbabilityModel pm) {
+		BVBayes bayes = new BVBayes(null, pm);
+		allWeights.put(name, bayes.getAllWeights());
+		models.put(name, bayes);
+	}
+
+	/**
+	 * @return the name by which the model in pmfile is known to clients
+	 */
+	public static String getModelName(String pmfile) {
+		String name = new java.io.File(pmfile).getName();
+		int dot = name.lastIndexOf('.');
+		return dot > 0 ? name.substring(0, dot) : name;
+	}
+
+	/**
+	 * Read requests from in and write replies to out until QUIT or the end of
+	 * the input
+	 */
+	public void serve(BufferedReader in, PrintWriter out) throws IOException {
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			if (line.length() == 0)
+				continue;
+			if (line.equalsIgnoreCase("QUIT"))
+				break;
+			reply(line, in, out);
+			out.println(END);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Accept clients on port (of the loopback interface) for ever, serving
+	 * each on a thread of its own
+	 */
+	public void listen(int port) throws IOException {
+		ServerSocket ss = new ServerSocket(port, 50, InetAddress
+				.getLoopbackAddress());
+		System.err.println("Listening on " + ss.getLocalSocketAddress());
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			while (true) {
+				final Socket s = ss.accept();
+				executor.execute(new Runnable() {
+					public void run() {
+						try {
+							serve(new BufferedReader(new InputStreamReader(s
+									.getInputStream(), "ISO-8859-1")),
+									new PrintWriter(new OutputStreamWriter(s
+											.getOutputStream(), "ISO-8859-1")));
+						} catch (IOException e) {
+							System.err.println("Error serving "
+									+ s.getRemoteSocketAddress() + ": " + e);
+						} finally {
+							try {
+								s.close();
+							} catch (IOException e) {
+							}
+						}
+					}
+				});
+			}
+		} finally {
+			executor.shutdown();
+			ss.close();
+		}
+	}
+
+	/**
+	 * Handle a request, reading what follows it (if anything) from in and
+	 * writing its reply (but for the END line) to out
+	 */
+	void reply(String line, BufferedReader in, PrintWriter out) {
+		long start = System.nanoTime();
+		String[] f = line.split("\\s+", 2);
+		String cmd = f[0].toUpperCase();
+		try {
+			if (cmd.equals("STATS"))
+				printStats(out);
+			else if (cmd.equals("MODELS"))
+				for (Map.Entry<String, BVBayes> e : models.entrySet()) {
+					ProbabilityModel pm = e.getValue().getProbabilityModel();
+					out.println(e.getKey() + " " + pm.getTermSetSize() + " "
+							+ pm.getCategSetSize());
+				}
+			else if (cmd.equals("TEXT")) {
+				f = line.split("\\s+", 5);
+				if (f.length < 4)
+					throw new IllegalArgumentException(
+							"usage: TEXT model categ id text");
+				ArrayList<ParsedNewsItem> items = new ArrayList<ParsedNewsItem>(
+						1);
+				items.add(new ParsedNewsItem(f.length > 4 ? f[4] : "", f[3]));
+				classify(f[1], f[2], items, out);
+				latency.record(System.nanoTime() - start);
+			} else if (cmd.equals("XML")) {
+				f = line.split("\\s+", 4);
+				if (f.length < 3)
+					throw new IllegalArgumentException(
+							"usage: XML model categ [fragment]");
+				String fragment;
+				if (f.length > 3)
+					fragment = f[3];
+				else {
+					fragment = readFragment(in);
+					start = System.nanoTime();
+				}
+				classify(f[1], f[2], parseFragment(fragment), out);
+				latency.record(System.nanoTime() - start);
+			} else
+				throw new IllegalArgumentException("unknown command: " + f[0]);
+			requests.incrementAndGet();
+		} catch (Exception e) {
+			errors.incrementAndGet();
+			out.println("ERROR " + e);
+		}
+	}
+
+	/**
+	 * Read the lines of a fragment from in, up to a line holding only END,
+	 * removing the extra full stop from lines which start with one
+	 *
+	 * @return the lines read, each followed by a newline
+	 */
+	static String readFragment(BufferedReader in) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.equals(END))
+				return sb.toString();
+			if (line.startsWith(END))
+				line = line.substring(1);
+			sb.append(line).append('\n');
+		}
+		throw new EOFException("fragment not terminated by a line holding '"
+				+ END + "'");
+	}
+
+	/**
+	 * @return the news items in a fragment of a Reuters file
+	 */
+	static ArrayList<ParsedNewsItem> parseFragment(String fragment)
+			throws IOException {
+		final ArrayList<ParsedNewsItem> items = new ArrayList<ParsedNewsItem>();
+		new ReutersScanner(ByteBuffer.wrap(fragment.getBytes("ISO-8859-1")))
+				.parse(new NewsItemListener() {
+					public void newsItem(ParsedNewsItem pni) {
+						items.add(pni);
+					}
+				});
+		return items;
+	}
+
+	/**
+	 * Print a line with the CSV for cat (or every category, if cat is ALL)
+	 * and the decision for each item
+	 */
+	private void classify(String model, String cat,
+			ArrayList<ParsedNewsItem> items, PrintWriter out) {
+		BVBayes bayes = models.get(model);
+		if (bayes == null)
+			throw new IllegalArgumentException("unknown model: " + model);
+		CategoryWeights[] weights;
+		if (cat.equals(ALL))
+			weights = allWeights.get(model);
+		else if (bayes.getProbabilityModel().getCategoryId(cat) < 0)
+			throw new IllegalArgumentException("unknown category: " + cat);
+		else
+			weights = new CategoryWeights[] { bayes.getWeights(cat) };
+		double[] csvs = new double[weights.length];
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < items.size(); i++) {
+			ParsedNewsItem pni = items.get(i);
+			bayes.computeCSVs(weights, pni, csvs);
+			sb.setLength(0);
+			sb.append(pni.getId());
+			for (int k = 0; k < weights.length; k++)
+				sb.append(' ').append(weights[k].getCategory()).append(' ')
+						.append(csvs[k]).append(' ').append(
+								csvs[k] < threshold ? 0 : 1);
+			out.println(sb);
+		}
+		documents.addAndGet(items.size());
+	}
+
+	private void printStats(PrintWriter out) {
+		double uptime = (System.nanoTime() - started) / 1e9;
+		out.println("requests " + requests.get());
+		out.println("documents " + documents.get());
+		out.println("errors " + errors.get());
+		out.println("uptime_s " + Math.round(uptime * 1000) / 1000.0);
+		out.println("docs_per_s " + Math.round(documents.get() / uptime));
+		out.println("latency_us_p50 " + latency.getPercentile(0.5));
+		out.println("latency_us_p90 " + latency.getPercentile(0.9));
+		out.println("latency_us_p99 " + latency.getPercentile(0.99));
+		out.println("latency_us_p999 " + latency.getPercentile(0.999));
+		out.println("latency_us_max " + latency.getMax());
+	}
+
+	public static void main(String[] args) {
+		try {
+			int port = -1;
+			double threshold = 0;
+			int a = 0;
+			for (; a < args.length && args[a].startsWith("-"); a += 2)
+				if (args[a].equals("-port"))
+					port = Integer.parseInt(args[a + 1]);
+				else if (args[a].equals("-threshold"))
+					threshold = Double.parseDouble(args[a + 1]);
+				else
+					throw new IllegalArgumentException("unknown option: "
+							+ args[a]);
+			if (a == args.length)
+				throw new IllegalArgumentException("no model given");
+			ClassificationServer server = new ClassificationServer(threshold);
+			for (; a < args.length; a++) {
+				long start = System.nanoTime();
+				ProbabilityModel pm = IOUtil.loadProbabilityModel(args[a]);
+				if (pm == null)
+					throw new IOException("cannot load " + args[a]);
+				String name = getModelName(args[a]);
+				server.addModel(name, pm);
+				System.err.println("Loaded " + name + " (" + pm.getTermSetSize()
+						+ " terms, " + pm.getCategSetSize()
+						+ " categories) in " + (System.nanoTime() - start)
+						/ 1000000 + " ms");
+			}
+			if (port < 0)
+				server.serve(new BufferedReader(new InputStreamReader(
+						System.in, "ISO-8859-1")), new PrintWriter(
+						new OutputStreamWriter(System.out, "ISO-8859-1")));
+			else
+				server.listen(port);
+		} catch (Exception e) {
+			System.err
+					.println("Usage: ClassificationServer [-port PORT] [-threshold T] PMFILE [PMFILE ...]");
+			e.printStackTrace();
+		}
+	}
+}
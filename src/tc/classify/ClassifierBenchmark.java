@@ -0,0 +1,123 @@
+package tc.classify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import tc.dstruct.CorpusList;
+import tc.dstruct.ParsedNewsItem;
+import tc.evaluation.CSVTable;
+import tc.parser.CorpusCache;
+import tc.parser.NewsItemListener;
+
+/**
+ * Compare the throughput of BVBayes.computeCSVByTerm(), which looks every
+ * term of a document up in the probability model, with that of
+ * BVBayes.computeCSV(), which sums the weights compiled into a
+ * CategoryWeights table, and measure how the batch API, BVBayes.classify(),
+ * scales with the number of threads.
+ *
+ * Usage:
+ *
+ * <pre>
+ *  ClassifierBenchmark corpus_list categ pmfile [rounds [threads]]
+ * </pre>
+ *
+ * The news items in corpus_list are read once; their CSVs are then computed
+ * 'rounds' times (default 5, after a warm-up round) each way, and the best
+ * round is reported in documents per second, along with the time taken to
+ * compile the weights. Both ways are checked to produce the same CSVs.
+ *
+ * The CSVs are then computed with BVBayes.classify() on 1, 2, 4, ... up to
+ * 'threads' platform threads (default: the number of available processors)
+ * and on virtual threads, where supported, and checked against the
+ * sequential ones. Note that speed-up is bounded by the number of processors
+ * actually available.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see BVBayes
+ * @see CategoryWeights
+ */
+public class ClassifierBenchmark {
+
+	public static void main(String[] args) {
+		try {
+			CorpusList clist = new CorpusList(args[0]);
+			String cat = args[1];
+			int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+			BVBayes bayes = new BVBayes(args[0], args[2]);
+			final ArrayList<ParsedNewsItem> items = new ArrayList<ParsedNewsItem>();
+			for (int i = 0; i < clist.size(); i++)
+				CorpusCache.parse((String) clist.get(i), new NewsItemListener() {
+					public void newsItem(ParsedNewsItem pni) {
+						items.add(pni);
+					}
+				});
+			long start = System.nanoTime();
+			bayes.getWeights(cat);
+			System.out.println("Compiled weights for " + cat + " in "
+					+ (System.nanoTime() - start) / 1000000 + " ms");
+			String[] names = { "computeCSVByTerm", "computeCSV (compiled)" };
+			double[][] csvs = new double[2][items.size()];
+			for (int k = 0; k < names.length; k++) {
+				long best = Long.MAX_VALUE;
+				for (int r = 0; r <= rounds; r++) {
+					start = System.nanoTime();
+					for (int d = 0; d < items.size(); d++)
+						csvs[k][d] = k == 0 ? bayes.computeCSVByTerm(cat, items
+								.get(d)) : bayes.computeCSV(cat, items.get(d));
+					long t = System.nanoTime() - start;
+					// round 0 is a warm-up
+					if (r > 0 && t < best)
+						best = t;
+				}
+				System.out.println(names[k] + ": " + items.size()
+						+ " documents in " + best / 1000000 + " ms = "
+						+ (long) (items.size() / (best / 1e9)) + " docs/s");
+			}
+			System.out.println("Identical CSVs: "
+					+ Arrays.equals(csvs[0], csvs[1]));
+			int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime
+					.getRuntime().availableProcessors();
+			ArrayList<Integer> nthreads = new ArrayList<Integer>();
+			for (int n = 1; n < threads; n *= 2)
+				nthreads.add(n);
+			nthreads.add(threads);
+			// 0 stands for virtual threads
+			nthreads.add(0);
+			double base = 0;
+			for (int n : nthreads) {
+				ExecutorService executor = BVBayes.newExecutor(n);
+				long best = Long.MAX_VALUE;
+				CSVTable csvt = null;
+				try {
+					for (int r = 0; r <= rounds; r++) {
+						csvt = new CSVTable(cat);
+						start = System.nanoTime();
+						bayes.classify(items, cat, csvt, executor);
+						long t = System.nanoTime() - start;
+						if (r > 0 && t < best)
+							best = t;
+					}
+				} finally {
+					executor.shutdown();
+				}
+				boolean same = csvt.size() == items.size();
+				for (int d = 0; same && d < items.size(); d++)
+					same = csvt.getCSV(items.get(d).getId()) == csvs[1][d];
+				double rate = items.size() / (best / 1e9);
+				if (n == 1)
+					base = rate;
+				System.out.println("classify() on "
+						+ (n == 0 ? "virtual threads" : n + " thread(s)") + ": "
+						+ best / 1000000 + " ms = " + (long) rate
+						+ " docs/s, speed-up " + Math.round(100 * rate / base)
+						/ 100.0 + (same ? "" : " (CSVS DIFFER)"));
+			}
+		} catch (Exception e) {
+			System.err
+					.println("Usage: ClassifierBenchmark CORPUS_LIST CATEG PMFILE [ROUNDS [THREADS]]");
+			e.printStackTrace();
+		}
+	}
+}
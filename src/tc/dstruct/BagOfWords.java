@@ -2,24 +2,41 @@ package tc.dstruct;
 
 import tc.tsr.*;
 import tc.parser.*;
-import java.util.Vector;
-import java.util.Map;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Set;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * Store number of tokens indexed by types
  * 
+ * Types and their counts are kept in two parallel arrays, in the order in
+ * which the types were first added, and found through an open-addressing
+ * (linear probing) hash table of positions in these arrays. Counts are plain
+ * ints, and tokens read from a SpanTokenizer are looked up in their buffer,
+ * so a String is only made for a type the first time it is seen. A bag can be
+ * emptied with clear() and reused, and iterated by position (see size(),
+ * getTerm(int) and getCount(int)) without building WordFrequencyPair arrays.
+ * 
  * @author Saturnino Luz &#60;luzs@acm.org&#62;
  * @version <font size=-1>$Id: BagOfWords.java,v 1.5 2004/03/25 16:09:43 luzs
  *          Exp $</font>
  * @see
  */
-public class BagOfWords extends HashMap {
+public class BagOfWords {
 
 	private boolean ignoreCase = true;
+	private String[] terms = new String[16];
+	private int[] counts = new int[16];
+	private int[] hashes = new int[16];
+	private int size = 0;
+	/**
+	 * hash table: (position in terms + 1), or 0 for an empty slot. Its length
+	 * is a power of 2, and at least twice size.
+	 */
+	private int[] table = new int[32];
 
 	public BagOfWords() {
 		super();
@@ -35,31 +52,96 @@ public class BagOfWords extends HashMap {
 		addTokens(text, swlist);
 	}
 
+	/**
+	 * Count the tokens of pni, using its token sequence if it has been
+	 * tokenised already, or its text otherwise
+	 */
+	public BagOfWords(ParsedNewsItem pni) {
+		super();
+		addTokens(pni);
+	}
+
+	public BagOfWords(ParsedNewsItem pni, StopWordList swlist) {
+		super();
+		addTokens(pni, swlist);
+	}
+
+	public void addTokens(ParsedNewsItem pni) {
+		TokenSequence ts = pni.getTokenSequence();
+		if (ts == null) {
+			addTokens(pni.getText());
+			return;
+		}
+		for (int i = 0; i < ts.size(); i++)
+			addKey(getTerm(ts, i), 1);
+	}
+
+	public void addTokens(ParsedNewsItem pni, StopWordList swlist) {
+		TokenSequence ts = pni.getTokenSequence();
+		if (ts == null) {
+			addTokens(pni.getText(), swlist);
+			return;
+		}
+		for (int i = 0; i < ts.size(); i++)
+			if (!isStopWord(ts, i, swlist))
+				addKey(getTerm(ts, i), 1);
+	}
+
+	/**
+	 * Stop words are matched against the token as it occurs in the text (i.e.
+	 * before dots are removed) in lower case, which is the token's term
+	 * unless the token has dots.
+	 */
+	private static boolean isStopWord(TokenSequence ts, int i,
+			StopWordList swlist) {
+		return ts.hasDots(i) ? swlist.contains(ts.getToken(i)) : swlist
+				.containsFolded(ts.getTerm(i));
+	}
+
+	private String getTerm(TokenSequence ts, int i) {
+		return isIgnoreCase() ? ts.getTerm(i) : Tokenizer.fixType(ts
+				.getToken(i));
+	}
+
 	public void addTokens(String text) {
-		Tokenizer tkzr = new Tokenizer(text);
-		while (tkzr.hasMoreTokens())
-			addToken(tkzr.nextToken());
+		SpanTokenizer tkzr = newTokenizer(text);
+		while (tkzr.next())
+			addKey(tkzr, 1);
 	}
 
 	public void addTokens(String text, StopWordList swlist) {
-		Tokenizer tkzr = new Tokenizer(text);
-		while (tkzr.hasMoreTokens()) {
-			String t = tkzr.nextToken();
-			// System.err.println("Adding "+t);
-			if (!swlist.contains(t))
-				addToken(t);
+		SpanTokenizer tkzr = newTokenizer(text);
+		while (tkzr.next()) {
+			// System.err.println("Adding "+tkzr.token());
+			if (!isStopWord(tkzr, swlist))
+				addKey(tkzr, 1);
 		}
 	}
 
+	/**
+	 * Stop words are matched against the token as it occurs in the text (i.e.
+	 * before dots are removed) in lower case. That is the term in tkzr's
+	 * buffer, if the token had no dots and tkzr folds case, so it can be
+	 * looked up in place.
+	 */
+	private static boolean isStopWord(SpanTokenizer tkzr, StopWordList swlist) {
+		if (tkzr.hadDots())
+			return swlist.contains(tkzr.token());
+		if (!tkzr.isFoldCase())
+			return swlist.contains(tkzr.term());
+		return swlist.contains(tkzr.termBuffer(), 0, tkzr.termLength());
+	}
+
 	/**
 	 * addToFileCount: tokenize text and add 1 for each type (not token) to the
 	 * frequency list (text is assumed to be a single file)
 	 */
 	public void addTypesToFileCount(String text) {
-		Tokenizer tkzr = new Tokenizer(text);
-		Vector added = new Vector();
-		while (tkzr.hasMoreTokens())
-			addType(tkzr.nextToken(), added);
+		SpanTokenizer tkzr = newTokenizer(text);
+		BagOfWords added = new BagOfWords();
+		while (tkzr.next())
+			if (added.addKey(tkzr, 1) == 0)
+				addKey(tkzr, 1);
 	}
 
 	public int addToken(String type) {
@@ -72,62 +154,217 @@ public class BagOfWords extends HashMap {
 	private int addToken(String type, int number) {
 		String key = isIgnoreCase() ? Tokenizer.fixType(type.toLowerCase())
 				: Tokenizer.fixType(type);
-		if (key.equals(""))
+		return addKey(key, number);
+	}
+
+	private SpanTokenizer newTokenizer(String text) {
+		SpanTokenizer tkzr = new SpanTokenizer(text);
+		tkzr.setFoldCase(isIgnoreCase());
+		return tkzr;
+	}
+
+	/**
+	 * Add number to the count of key. Return the previous count.
+	 */
+	private int addKey(String key, int number) {
+		if (key.length() == 0)
 			return 0;
-		int count = getCount(key);
-		put(key, new Integer(count + number));
-		return count;
+		int h = key.hashCode();
+		int slot = spread(h) & (table.length - 1);
+		for (int e; (e = table[slot]) != 0; slot = (slot + 1)
+				& (table.length - 1))
+			if (hashes[e - 1] == h && terms[e - 1].equals(key))
+				return increment(e - 1, number);
+		insert(slot, key, h, number);
+		return 0;
 	}
 
-	private int addType(String type, Vector added) {
-		String key = isIgnoreCase() ? Tokenizer.fixType(type.toLowerCase())
-				: Tokenizer.fixType(type);
-		if (key.equals("") || added.contains(key))
+	/**
+	 * Add number to the count of the term in tkzr's buffer, without making a
+	 * String of it unless it is new. Return the previous count.
+	 */
+	private int addKey(SpanTokenizer tkzr, int number) {
+		char[] buf = tkzr.termBuffer();
+		int len = tkzr.termLength();
+		if (len == 0)
 			return 0;
-		added.add(key);
-		int count = getCount(key);
-		put(key, new Integer(count + 1));
+		// same as String.hashCode()
+		int h = 0;
+		for (int i = 0; i < len; i++)
+			h = 31 * h + buf[i];
+		int slot = spread(h) & (table.length - 1);
+		for (int e; (e = table[slot]) != 0; slot = (slot + 1)
+				& (table.length - 1))
+			if (hashes[e - 1] == h && equals(terms[e - 1], buf, len))
+				return increment(e - 1, number);
+		insert(slot, new String(buf, 0, len), h, number);
+		return 0;
+	}
+
+	/**
+	 * Mix the high bits of a String hash code into the low ones, which pick
+	 * the slot
+	 */
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean equals(String s, char[] buf, int len) {
+		if (s.length() != len)
+			return false;
+		for (int i = 0; i < len; i++)
+			if (s.charAt(i) != buf[i])
+				return false;
+		return true;
+	}
+
+	private int increment(int e, int number) {
+		int count = counts[e];
+		counts[e] = count + number;
 		return count;
 	}
 
+	private void insert(int slot, String key, int h, int number) {
+		if (size == terms.length) {
+			terms = Arrays.copyOf(terms, 2 * size);
+			counts = Arrays.copyOf(counts, 2 * size);
+			hashes = Arrays.copyOf(hashes, 2 * size);
+		}
+		terms[size] = key;
+		counts[size] = number;
+		hashes[size] = h;
+		table[slot] = ++size;
+		if (2 * size > table.length)
+			rehash(2 * table.length);
+	}
+
+	/**
+	 * Rebuild the hash table from the (dense) term arrays
+	 */
+	private void rehash(int length) {
+		if (table.length != length)
+			table = new int[length];
+		else
+			Arrays.fill(table, 0);
+		int mask = length - 1;
+		for (int e = 0; e < size; e++) {
+			int slot = spread(hashes[e]) & mask;
+			while (table[slot] != 0)
+				slot = (slot + 1) & mask;
+			table[slot] = e + 1;
+		}
+	}
+
+	/**
+	 * @return position of type in the bag, or -1 if it is not there
+	 */
+	private int indexOf(String type) {
+		if (type == null)
+			return -1;
+		int h = type.hashCode();
+		int mask = table.length - 1;
+		for (int slot = spread(h) & mask, e; (e = table[slot]) != 0; slot = (slot + 1)
+				& mask)
+			if (hashes[e - 1] == h && terms[e - 1].equals(type))
+				return e - 1;
+		return -1;
+	}
+
+	/**
+	 * Empty the bag, keeping its storage for reuse
+	 */
+	public void clear() {
+		Arrays.fill(terms, 0, size, null);
+		Arrays.fill(table, 0);
+		size = 0;
+	}
+
+	/**
+	 * Delete the entries at positions for which keep[position] is false,
+	 * keeping the remaining ones in order
+	 */
+	private void compact(boolean[] keep) {
+		int n = 0;
+		for (int e = 0; e < size; e++)
+			if (keep[e]) {
+				terms[n] = terms[e];
+				counts[n] = counts[e];
+				hashes[n] = hashes[e];
+				n++;
+			}
+		Arrays.fill(terms, n, size, null);
+		size = n;
+		rehash(table.length);
+	}
+
+	/**
+	 * Remove the terms which are stop words exactly as listed in swl (in a
+	 * case-sensitive bag, "The" is kept)
+	 */
 	public void removeStopWords(StopWordList swl) {
-		for (Iterator e = swl.iterator(); e.hasNext();)
-			this.remove(e.next());
+		boolean[] keep = new boolean[size];
+		boolean removed = false;
+		for (int e = 0; e < size; e++) {
+			keep[e] = !swl.containsFolded(terms[e]);
+			removed |= !keep[e];
+		}
+		if (removed)
+			compact(keep);
 	}
 
 	public void removeLessThan(int noccur) {
-		for (Iterator e = this.entrySet().iterator(); e.hasNext();) {
-			Map.Entry kv = (Map.Entry) e.next();
-			if (getCount((Integer) kv.getValue()) < noccur)
-				e.remove();
+		boolean[] keep = new boolean[size];
+		boolean removed = false;
+		for (int e = 0; e < size; e++) {
+			keep[e] = counts[e] >= noccur;
+			removed |= !keep[e];
 		}
+		if (removed)
+			compact(keep);
 	}
 
 	public int getCount(String type) {
-		return getCount((Integer) get(type));
-	}
-
-	private int getCount(Integer ct) {
-		return ct == null ? 0 : ct.intValue();
+		int e = indexOf(type);
+		return e < 0 ? 0 : counts[e];
 	}
 
 	public boolean containsTerm(String type) {
 		return getCount(type) > 0;
 	}
 
+	/**
+	 * @return number of types in the bag
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the i-th type in the bag (0 <= i < size())
+	 */
+	public String getTerm(int i) {
+		return terms[i];
+	}
+
+	/**
+	 * @return the number of tokens of the i-th type in the bag
+	 */
+	public int getCount(int i) {
+		return counts[i];
+	}
+
 	/**
 	 * Return an array of objects comparable by double-precision floating point
 	 * numbers
 	 */
 	public WordScorePair[] getWordScoreArray() {
-		WordScorePair[] wfp = new WordScorePair[this.size()];
-		int i = 0;
-		for (Iterator e = this.entrySet().iterator(); e.hasNext();) {
-			Map.Entry kv = (Map.Entry) e.next();
-			String type = (String) kv.getKey();
-			double notokens = (double) getCount((Integer) kv.getValue());
-			wfp[i++] = new WordScorePair(type, notokens);
-		}
+		WordScorePair[] wfp = new WordScorePair[size];
+		for (int i = 0; i < size; i++)
+			wfp[i] = new WordScorePair(terms[i], (double) counts[i]);
 		return wfp;
 	}
 
@@ -135,20 +372,14 @@ public class BagOfWords extends HashMap {
 	 * Return an array of comparable objects (e.g. for sorting)
 	 */
 	public WordFrequencyPair[] getWordFrequencyArray() {
-		WordFrequencyPair[] wfp = new WordFrequencyPair[this.size()];
-		int i = 0;
-		for (Iterator e = this.entrySet().iterator(); e.hasNext();) {
-			Map.Entry kv = (Map.Entry) e.next();
-			String type = (String) kv.getKey();
-			int notokens = getCount((Integer) kv.getValue());
-			wfp[i++] = new WordFrequencyPair(type, notokens);
-		}
+		WordFrequencyPair[] wfp = new WordFrequencyPair[size];
+		for (int i = 0; i < size; i++)
+			wfp[i] = new WordFrequencyPair(terms[i], counts[i]);
 		return wfp;
 	}
 
 	public String[] getTermSet() {
-		WordFrequencyPair[] wfp = getWordFrequencyArray();
-		return BagOfWords.extractTermSet(wfp);
+		return Arrays.copyOf(terms, size);
 	}
 
 	public static Set extractTermCollection(WordFrequencyPair[] wfp) {
@@ -175,8 +406,39 @@ public class BagOfWords extends HashMap {
 		return tset;
 	}
 
-	public Set keySet() {
-		return super.keySet();
+	/**
+	 * @return the types in the bag, as a (read-only) view
+	 */
+	public Set<String> keySet() {
+		return new AbstractSet<String>() {
+			public int size() {
+				return size;
+			}
+
+			public boolean contains(Object o) {
+				return o instanceof String && indexOf((String) o) >= 0;
+			}
+
+			public Iterator<String> iterator() {
+				return new Iterator<String>() {
+					private int i = 0;
+
+					public boolean hasNext() {
+						return i < size;
+					}
+
+					public String next() {
+						if (i >= size)
+							throw new NoSuchElementException();
+						return terms[i++];
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
 	}
 
 	/**
@@ -0,0 +1,254 @@
+package tc.dstruct;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * An immutable, compressed copy of a list of postings (see Postings) or of
+ * a document list (see DocList), for sequential decoding and intersection.
+ *
+ * Each posting is stored as the gap between its document id and the
+ * previous one, minus one, shifted left by one bit, with the low bit set if
+ * the count is not 1, in a variable-length byte code (7 bits per byte, the
+ * high bit set on every byte but the last); if the low bit is set, the count
+ * follows in the same code. Most terms occur once in most documents, so a
+ * posting usually takes one or two bytes, against eight in a Postings.
+ *
+ * The postings are grouped in blocks of BLOCK. The last document id of each
+ * block and where the block starts are kept in two int arrays (skip
+ * pointers), so that Cursor.advance() can skip whole blocks without decoding
+ * them. Lists of a single block (most of them) share empty skip arrays.
+ *
+ * This is a prototype: no model stores its postings this way yet. It is used
+ * only by ModelFootprint, which compares its size and decoding and
+ * intersection times with those of the arrays in a ProbabilityModel.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see Postings
+ * @see tc.induction.ModelFootprint
+ */
+public class CompressedPostings implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	/** postings per block */
+	public static final int BLOCK = 128;
+	private static final int[] NO_BLOCKS = new int[0];
+	private byte[] data;
+	private int size;
+	/** blockLast[b]: the last document id in block b */
+	private int[] blockLast;
+	/** blockStart[b]: position in data of the first posting of block b */
+	private int[] blockStart;
+
+	/**
+	 * Compress dl (with the counts of each document if dl is a Postings, or
+	 * counts of 1 otherwise)
+	 */
+	public CompressedPostings(DocList dl) {
+		size = dl.size();
+		int nblocks = (size + BLOCK - 1) / BLOCK;
+		blockLast = nblocks > 1 ? new int[nblocks] : NO_BLOCKS;
+		blockStart = nblocks > 1 ? new int[nblocks] : NO_BLOCKS;
+		Postings ps = dl instanceof Postings ? (Postings) dl : null;
+		byte[] b = new byte[Math.max(16, size + size / 2)];
+		int n = 0;
+		int prev = -1;
+		for (int i = 0; i < size; i++) {
+			if (i % BLOCK == 0 && nblocks > 1)
+				blockStart[i / BLOCK] = n;
+			// at most two codes of five bytes each
+			if (n + 10 > b.length)
+				b = Arrays.copyOf(b, 2 * b.length);
+			int doc = dl.get(i);
+			int count = ps == null ? 1 : ps.getCount(i);
+			n = putVInt(b, n, (doc - prev - 1) << 1 | (count == 1 ? 0 : 1));
+			if (count != 1)
+				n = putVInt(b, n, count);
+			prev = doc;
+			if ((i % BLOCK == BLOCK - 1 || i == size - 1) && nblocks > 1)
+				blockLast[i / BLOCK] = doc;
+		}
+		data = Arrays.copyOf(b, n);
+	}
+
+	/**
+	 * Write v (taken as unsigned) into b at n, and return the position after
+	 * it
+	 */
+	private static int putVInt(byte[] b, int n, int v) {
+		while ((v & ~0x7f) != 0) {
+			b[n++] = (byte) (v & 0x7f | 0x80);
+			v >>>= 7;
+		}
+		b[n++] = (byte) v;
+		return n;
+	}
+
+	/**
+	 * @return number of postings
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return approximate bytes of heap occupied (the object and its arrays,
+	 *         counted as in DocList.bytes())
+	 */
+	public long bytes() {
+		long b = 16 + 16 + data.length;
+		if (blockLast.length > 0)
+			b += 2 * (16 + 4L * blockLast.length);
+		return b;
+	}
+
+	/**
+	 * @return a new cursor, positioned before the first posting
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * @return number of occurrences of the term in doc (0 if it doesn't occur
+	 *         in doc)
+	 */
+	public int getDocCount(int doc) {
+		Cursor cur = new Cursor();
+		return cur.advance(doc) && cur.doc() == doc ? cur.count() : 0;
+	}
+
+	/**
+	 * Count the documents both in this list and in dl, by binary search in
+	 * dl when this list is much shorter, or by merging otherwise (skipping
+	 * the blocks of this list which fall between documents of dl).
+	 */
+	public int intersectionCount(DocList dl) {
+		int n = 0;
+		Cursor cur = new Cursor();
+		if (size * 16 < dl.size) {
+			int from = 0;
+			while (cur.next() && from < dl.size) {
+				int p = Arrays.binarySearch(dl.docs, from, dl.size, cur.doc);
+				if (p >= 0) {
+					n++;
+					from = p + 1;
+				} else
+					from = -(p + 1);
+			}
+			return n;
+		}
+		if (dl.size == 0 || !cur.next())
+			return 0;
+		int j = 0;
+		while (true) {
+			int doc = dl.docs[j];
+			if (cur.doc < doc) {
+				if (!cur.advance(doc))
+					break;
+			} else if (cur.doc > doc) {
+				if (++j == dl.size)
+					break;
+			} else {
+				n++;
+				if (!cur.next() || ++j == dl.size)
+					break;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * @return a Postings holding the same postings
+	 */
+	public Postings toPostings() {
+		Postings ps = new Postings(size);
+		for (Cursor cur = new Cursor(); cur.next();)
+			ps.put(cur.doc, cur.count);
+		return ps;
+	}
+
+	/**
+	 * Decodes the postings in order. A Cursor is not thread-safe, but any
+	 * number of them may read the same CompressedPostings at once.
+	 */
+	public class Cursor {
+		/** index of the current posting */
+		private int i = -1;
+		/** position in data of the next posting */
+		private int pos = 0;
+		private int doc = -1;
+		private int count = 0;
+
+		/**
+		 * Move to the next posting
+		 *
+		 * @return false if there are no more postings
+		 */
+		public boolean next() {
+			if (i + 1 >= size) {
+				i = size;
+				return false;
+			}
+			i++;
+			int v = getVInt();
+			doc += (v >>> 1) + 1;
+			count = (v & 1) == 0 ? 1 : getVInt();
+			return true;
+		}
+
+		private int getVInt() {
+			int b = data[pos++];
+			int v = b & 0x7f;
+			for (int shift = 7; b < 0; shift += 7) {
+				b = data[pos++];
+				v |= (b & 0x7f) << shift;
+			}
+			return v;
+		}
+
+		/**
+		 * Move forward to the first posting (from the current one on) whose
+		 * document id is target or greater, skipping the blocks which end
+		 * before target
+		 *
+		 * @return false if there is no such posting
+		 */
+		public boolean advance(int target) {
+			if (i >= 0 && i < size && doc >= target)
+				return true;
+			int b = (i + 1) / BLOCK;
+			if (b < blockLast.length && blockLast[b] < target) {
+				b = Arrays.binarySearch(blockLast, b + 1, blockLast.length,
+						target);
+				if (b < 0)
+					b = -(b + 1);
+				if (b == blockLast.length) {
+					i = size;
+					return false;
+				}
+				i = b * BLOCK - 1;
+				pos = blockStart[b];
+				doc = blockLast[b - 1];
+			}
+			while (next())
+				if (doc >= target)
+					return true;
+			return false;
+		}
+
+		/**
+		 * @return the document id of the current posting
+		 */
+		public int doc() {
+			return doc;
+		}
+
+		/**
+		 * @return the count of the current posting
+		 */
+		public int count() {
+			return count;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package tc.dstruct;
+/**
+ *  Record the document counts from which the joint probabilities of a
+ *  term and a category are estimated (see Probabilities): the number
+ *  of documents containing the term and in the category, containing
+ *  the term, in the category, and in the corpus.
+ *
+ *  A Counts object is meant to be filled in again and again by
+ *  ProbabilityModel.getCounts() (by a single thread), so that
+ *  querying the model allocates nothing.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see ProbabilityModel
+ * @see Probabilities
+*/
+public class Counts {
+  public int tc;
+  public int t;
+  public int c;
+  public int n;
+
+  public Counts set(int tc, int t, int c, int n)
+  {
+    this.tc = tc;
+    this.t = t;
+    this.c = c;
+    this.n = n;
+    return this;
+  }
+
+  /**
+   * @return p(t|c), estimated as tc / c
+   */
+  public double getPTgivenC(){
+    return (double) tc / c;
+  }
+
+  /**
+   * @return p(t|^c), estimated as (t - tc) / (n - c)
+   */
+  public double getPTgiven_C(){
+    return (double) (t - tc) / (n - c);
+  }
+
+  public Probabilities getProbabilities(){
+    return Probabilities.fromCounts(tc, t, c, n);
+  }
+}
@@ -0,0 +1,146 @@
+package tc.dstruct;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * A growable array of ints kept outside the heap, in a direct ByteBuffer (in
+ * the platform's byte order), so that however large it grows it is a single
+ * small object to the garbage collector.
+ *
+ * close() returns the memory to the system at once, through
+ * sun.misc.Unsafe.invokeCleaner() (in the jdk.unsupported module, which JDK 9
+ * and later have by default); only on a JVM without it is the memory left
+ * for the garbage collector to release with the buffer. The array may not be
+ * used after close(), and must not be closed while another thread is using
+ * it.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see OffHeapProbabilityModel
+ */
+public class DirectIntArray {
+
+	/** most ints a DirectIntArray can hold (a direct buffer has an int size) */
+	public static final int MAX_CAPACITY = Integer.MAX_VALUE / 4;
+	/** Unsafe.invokeCleaner(ByteBuffer) and the Unsafe, if the JVM has them */
+	private static final Method INVOKE_CLEANER;
+	private static final Object UNSAFE;
+	static {
+		Method m = null;
+		Object unsafe = null;
+		try {
+			Class<?> c = Class.forName("sun.misc.Unsafe");
+			Field f = c.getDeclaredField("theUnsafe");
+			f.setAccessible(true);
+			unsafe = f.get(null);
+			m = c.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (Exception e) {
+			// no Unsafe: free() leaves the memory to the garbage collector
+			m = null;
+		}
+		INVOKE_CLEANER = m;
+		UNSAFE = unsafe;
+	}
+	/** the buffer which ints views (which free() needs) */
+	private ByteBuffer buffer;
+	private IntBuffer ints;
+
+	public DirectIntArray(int capacity) {
+		allocate(Math.max(1, capacity));
+	}
+
+	private void allocate(int capacity) {
+		if (capacity > MAX_CAPACITY)
+			throw new OutOfMemoryError("DirectIntArray of " + capacity
+					+ " ints (at most " + MAX_CAPACITY + ")");
+		buffer = ByteBuffer.allocateDirect(4 * capacity).order(
+				ByteOrder.nativeOrder());
+		ints = buffer.asIntBuffer();
+	}
+
+	/**
+	 * Return the memory of b, a buffer made by ByteBuffer.allocateDirect()
+	 * (not a slice or duplicate of one), to the system at once, if the JVM
+	 * allows it. b may not be used afterwards, through any view of it.
+	 */
+	static void free(ByteBuffer b) {
+		if (INVOKE_CLEANER == null)
+			return;
+		try {
+			INVOKE_CLEANER.invoke(UNSAFE, b);
+		} catch (InvocationTargetException e) {
+			throw new IllegalArgumentException(e.getCause());
+		} catch (IllegalAccessException e) {
+			// left to the garbage collector
+		}
+	}
+
+	public int get(int i) {
+		return ints.get(i);
+	}
+
+	public void set(int i, int v) {
+		ints.put(i, v);
+	}
+
+	public int capacity() {
+		return ints.capacity();
+	}
+
+	/**
+	 * Make room for at least n ints, at least doubling the capacity if it has
+	 * to grow (up to MAX_CAPACITY), and free the old buffer
+	 *
+	 * @throws OutOfMemoryError
+	 *             if n is more than MAX_CAPACITY
+	 */
+	public void ensureCapacity(int n) {
+		if (n <= ints.capacity())
+			return;
+		if (n > MAX_CAPACITY)
+			throw new OutOfMemoryError("DirectIntArray of " + n
+					+ " ints (at most " + MAX_CAPACITY + ")");
+		ByteBuffer old = buffer;
+		IntBuffer oints = ints;
+		allocate((int) Math.min(Math.max(n, 2L * oints.capacity()),
+				MAX_CAPACITY));
+		oints.clear();
+		ints.put(oints);
+		ints.clear();
+		free(old);
+	}
+
+	/**
+	 * Copy n ints from position from to position to (the ranges may overlap)
+	 */
+	public void move(int from, int to, int n) {
+		if (to > from)
+			for (int i = n - 1; i >= 0; i--)
+				ints.put(to + i, ints.get(from + i));
+		else
+			for (int i = 0; i < n; i++)
+				ints.put(to + i, ints.get(from + i));
+	}
+
+	/**
+	 * @return bytes of memory held
+	 */
+	public long bytes() {
+		return ints == null ? 0 : 4L * ints.capacity();
+	}
+
+	/**
+	 * Free the memory (see the class comment)
+	 */
+	public void close() {
+		if (buffer == null)
+			return;
+		ints = null;
+		free(buffer);
+		buffer = null;
+	}
+}
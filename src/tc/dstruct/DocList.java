@@ -0,0 +1,151 @@
+package tc.dstruct;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A set of (int) document ids, kept as a sorted array. Documents are normally
+ * added in increasing id order, in which case add() simply appends.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see ProbabilityModel
+ */
+public class DocList implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	int[] docs;
+	int size = 0;
+
+	public DocList() {
+		this(4);
+	}
+
+	public DocList(int capacity) {
+		docs = new int[capacity < 1 ? 1 : capacity];
+	}
+
+	/**
+	 * Add doc to the list. Return its position in the list, or -(position +
+	 * 1) if it was already there.
+	 */
+	public int add(int doc) {
+		int p;
+		if (size == 0 || docs[size - 1] < doc)
+			p = size;
+		else {
+			p = Arrays.binarySearch(docs, 0, size, doc);
+			if (p >= 0)
+				return -(p + 1);
+			p = -(p + 1);
+		}
+		insertAt(p, doc);
+		return p;
+	}
+
+	/**
+	 * Make room for doc at position p (subclasses keep parallel arrays in
+	 * step by overriding grow() and insertAt())
+	 */
+	void insertAt(int p, int doc) {
+		if (size == docs.length)
+			grow(size < 2 ? 4 : 2 * size);
+		System.arraycopy(docs, p, docs, p + 1, size - p);
+		docs[p] = doc;
+		size++;
+	}
+
+	void grow(int capacity) {
+		docs = Arrays.copyOf(docs, capacity);
+	}
+
+	/**
+	 * @return position of doc in the list, or a negative number if it is not
+	 *         there
+	 */
+	public int indexOf(int doc) {
+		return Arrays.binarySearch(docs, 0, size, doc);
+	}
+
+	public boolean contains(int doc) {
+		return indexOf(doc) >= 0;
+	}
+
+	public int get(int i) {
+		return docs[i];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Count the documents in both this list and dl, by merging the two lists,
+	 * or by binary search in the longer one when the other is much shorter.
+	 */
+	public int intersectionCount(DocList dl) {
+		DocList a = size <= dl.size ? this : dl;
+		DocList b = a == this ? dl : this;
+		int n = 0;
+		if (a.size == 0)
+			return 0;
+		if (a.size * 16 < b.size) {
+			int from = 0;
+			for (int i = 0; i < a.size && from < b.size; i++) {
+				int p = Arrays.binarySearch(b.docs, from, b.size, a.docs[i]);
+				if (p >= 0) {
+					n++;
+					from = p + 1;
+				} else
+					from = -(p + 1);
+			}
+			return n;
+		}
+		int i = 0, j = 0;
+		while (i < a.size && j < b.size) {
+			int x = a.docs[i], y = b.docs[j];
+			if (x < y)
+				i++;
+			else if (x > y)
+				j++;
+			else {
+				n++;
+				i++;
+				j++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * @return a copy of the list, with no spare capacity
+	 */
+	public DocList copy() {
+		DocList dl = new DocList(size);
+		System.arraycopy(docs, 0, dl.docs, 0, size);
+		dl.size = size;
+		return dl;
+	}
+
+	/**
+	 * @return approximate bytes of heap occupied: the object and its array,
+	 *         counting 16 bytes for each object or array header
+	 */
+	public long bytes() {
+		return 16 + 16 + 4L * docs.length;
+	}
+
+	/**
+	 * Release unused capacity
+	 */
+	public void trimToSize() {
+		if (docs.length > size)
+			grow(size);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		trimToSize();
+		out.defaultWriteObject();
+	}
+}
@@ -0,0 +1,545 @@
+package tc.dstruct;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Vector;
+
+import tc.parser.NewsItemListener;
+import tc.parser.ReutersScanner;
+
+/**
+ * A read-only ProbabilityModel queried in place in a memory-mapped file, so
+ * that it opens in (about) the time it takes to map the file, and occupies
+ * (almost) no heap whatever its size.
+ *
+ * The file holds a header (MAGIC, VERSION, flags, corpus size) followed by
+ * the model's indices laid out as flat arrays, each preceded by its length:
+ *
+ * <pre>
+ *  terms, categories, documents:  string tables (see MappedStrings)
+ *  postStart, postDocs, postCounts: postings of term t at positions
+ *                   postStart[t] to postStart[t+1]-1 of postDocs (document
+ *                   ids, increasing) and postCounts (occurrences)
+ *  catStart, catDocs: documents of each category, likewise
+ *  docCatStart, docCatIds: categories of each document, likewise
+ *  rowStart, rowCats, rowCounts: the term/category matrix (see
+ *                   TermCategoryMatrix), likewise
+ * </pre>
+ *
+ * All numbers are big-endian ints (strings are UTF-16 chars), and every array
+ * starts on a 4-byte boundary, so each is read through an IntBuffer (or
+ * CharBuffer) view of the mapping. Since a single buffer maps the file, the
+ * file may not be larger than 2GB.
+ *
+ * Use write() (or IOUtil.dumpMappedProbabilityModel()) to save a model in
+ * this format and toProbabilityModel() to load it back into the heap. A
+ * MappedProbabilityModel is serialized as the equivalent ProbabilityModel.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see ProbabilityModel
+ * @see tc.util.IOUtil
+ */
+public class MappedProbabilityModel extends ProbabilityModel {
+
+	private static final long serialVersionUID = 1L;
+	/** "TCPM" */
+	public static final int MAGIC = 0x5443504d;
+	public static final int VERSION = 1;
+	private static final int IGNORE_CASE = 1;
+
+	private transient ByteBuffer buf;
+	private transient int pos;
+	private transient boolean ignoreCase;
+	private transient MappedStrings terms, categories, docs;
+	private transient IntBuffer postStart, postDocs, postCounts;
+	private transient IntBuffer catStart, catDocs;
+	private transient IntBuffer docCatStart, docCatIds;
+	private transient IntBuffer rowStart, rowCats, rowCounts;
+
+	/**
+	 * Query the model held in buf, from its position on
+	 */
+	public MappedProbabilityModel(ByteBuffer buf) throws IOException {
+		super();
+		this.buf = buf;
+		pos = buf.position();
+		if (buf.getInt(pos) != MAGIC)
+			throw new IOException("Not a mapped probability model");
+		if (buf.getInt(pos + 4) != VERSION)
+			throw new IOException("Unsupported mapped probability model version "
+					+ buf.getInt(pos + 4));
+		ignoreCase = (buf.getInt(pos + 8) & IGNORE_CASE) != 0;
+		corpusSize = buf.getInt(pos + 12);
+		pos += 16;
+		terms = nextStrings();
+		categories = nextStrings();
+		docs = nextStrings();
+		postStart = nextInts();
+		postDocs = nextInts();
+		postCounts = nextInts();
+		catStart = nextInts();
+		catDocs = nextInts();
+		docCatStart = nextInts();
+		docCatIds = nextInts();
+		rowStart = nextInts();
+		rowCats = nextInts();
+		rowCounts = nextInts();
+	}
+
+	/**
+	 * Map filename into memory and query the model it holds
+	 */
+	public static MappedProbabilityModel open(String filename)
+			throws IOException {
+		if (new java.io.File(filename).length() > Integer.MAX_VALUE)
+			throw new IOException(filename + " is too large to map");
+		return new MappedProbabilityModel(ReutersScanner.map(filename));
+	}
+
+	/**
+	 * @return true if filename starts with MAGIC
+	 */
+	public static boolean isMappedModel(String filename) {
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(
+					filename));
+			try {
+				return in.readInt() == MAGIC;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private IntBuffer nextInts() {
+		int n = buf.getInt(pos);
+		ByteBuffer b = buf.duplicate();
+		b.limit(pos + 4 + 4 * n);
+		b.position(pos + 4);
+		pos += 4 + 4 * n;
+		return b.slice().asIntBuffer();
+	}
+
+	private CharBuffer nextChars() {
+		int n = buf.getInt(pos);
+		ByteBuffer b = buf.duplicate();
+		b.limit(pos + 4 + 2 * n);
+		b.position(pos + 4);
+		// padded to a whole number of ints
+		pos += 4 + 2 * (n + (n & 1));
+		return b.slice().asCharBuffer();
+	}
+
+	private MappedStrings nextStrings() {
+		IntBuffer offsets = nextInts();
+		IntBuffer slots = nextInts();
+		return new MappedStrings(offsets, slots, nextChars());
+	}
+
+	/**
+	 * Save pm to filename in the format read by MappedProbabilityModel
+	 */
+	public static void write(ProbabilityModel pm, String filename)
+			throws IOException {
+		if (pm instanceof MappedProbabilityModel)
+			pm = ((MappedProbabilityModel) pm).toProbabilityModel();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(filename), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(pm.isIgnoreCase() ? IGNORE_CASE : 0);
+			out.writeInt(pm.corpusSize);
+			MappedStrings.write(out, pm.getTermIndex().getStrings());
+			MappedStrings.write(out, pm.getCategoryIndex().getStrings());
+			MappedStrings.write(out, pm.getDocIndex().getStrings());
+			int nterms = pm.getTermSetSize();
+			int ncats = pm.getCategSetSize();
+			int ndocs = pm.getDocIndex().size();
+			// postings
+			long n = 0;
+			out.writeInt(nterms + 1);
+			for (int t = 0; t <= nterms; t++) {
+				out.writeInt((int) n);
+				if (t < nterms)
+					n += pm.getPostings(t).size();
+			}
+			out.writeInt((int) n);
+			for (int t = 0; t < nterms; t++)
+				for (int i = 0; i < pm.getPostings(t).size(); i++)
+					out.writeInt(pm.getPostings(t).get(i));
+			out.writeInt((int) n);
+			for (int t = 0; t < nterms; t++)
+				for (int i = 0; i < pm.getPostings(t).size(); i++)
+					out.writeInt(pm.getPostings(t).getCount(i));
+			// categories
+			n = 0;
+			out.writeInt(ncats + 1);
+			for (int c = 0; c <= ncats; c++) {
+				out.writeInt((int) n);
+				if (c < ncats)
+					n += pm.getDocList(c).size();
+			}
+			out.writeInt((int) n);
+			for (int c = 0; c < ncats; c++)
+				for (int i = 0; i < pm.getDocList(c).size(); i++)
+					out.writeInt(pm.getDocList(c).get(i));
+			// categories of each document
+			n = 0;
+			out.writeInt(ndocs + 1);
+			for (int d = 0; d <= ndocs; d++) {
+				out.writeInt((int) n);
+				if (d < ndocs)
+					n += pm.getDocCategories(d).length;
+			}
+			out.writeInt((int) n);
+			for (int d = 0; d < ndocs; d++)
+				for (int c : pm.getDocCategories(d))
+					out.writeInt(c);
+			// term/category matrix
+			TermCategoryMatrix m = pm.getMatrix();
+			n = 0;
+			out.writeInt(nterms + 1);
+			for (int t = 0; t <= nterms; t++) {
+				out.writeInt((int) n);
+				if (t < nterms)
+					n += m.getRowSize(t);
+			}
+			out.writeInt((int) n);
+			for (int t = 0; t < nterms; t++)
+				for (int i = 0; i < m.getRowSize(t); i++)
+					out.writeInt(m.getRowCategory(t, i));
+			out.writeInt((int) n);
+			for (int t = 0; t < nterms; t++)
+				for (int i = 0; i < m.getRowSize(t); i++)
+					out.writeInt(m.getRowCount(t, i));
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @return a copy of this model in the heap (which may be modified)
+	 */
+	public ProbabilityModel toProbabilityModel() {
+		StringIndex ts = terms.toStringIndex();
+		StringIndex cs = categories.toStringIndex();
+		StringIndex ds = docs.toStringIndex();
+		Postings[] tTable = new Postings[Math.max(1, ts.size())];
+		for (int t = 0; t < ts.size(); t++)
+			tTable[t] = getPostings(t);
+		DocList[] cTable = new DocList[Math.max(1, cs.size())];
+		for (int c = 0; c < cs.size(); c++)
+			cTable[c] = getDocList(c);
+		int[][] docCats = new int[Math.max(1, ds.size())][];
+		for (int d = 0; d < ds.size(); d++) {
+			int from = docCatStart.get(d);
+			docCats[d] = new int[docCatStart.get(d + 1) - from];
+			for (int i = 0; i < docCats[d].length; i++)
+				docCats[d][i] = docCatIds.get(from + i);
+		}
+		return new ProbabilityModel(ts, tTable, cs, cTable, ds, docCats,
+				corpusSize, ignoreCase);
+	}
+
+	/**
+	 * Serialize the model as the equivalent ProbabilityModel
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		return toProbabilityModel();
+	}
+
+	/**
+	 * @return position of key in b between from and to-1, or a negative
+	 *         number if it isn't there (b must be sorted in that range)
+	 */
+	private static int binarySearch(IntBuffer b, int from, int to, int key) {
+		int lo = from, hi = to - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int v = b.get(mid);
+			if (v < key)
+				lo = mid + 1;
+			else if (v > key)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -(lo + 1);
+	}
+
+	public int getTermId(String term) {
+		return terms.getId(term);
+	}
+
+	public String getTerm(int t) {
+		return terms.get(t);
+	}
+
+	public int getCategoryId(String cat) {
+		return categories.getId(cat);
+	}
+
+	public int getTermCount(int t) {
+		return postStart.get(t + 1) - postStart.get(t);
+	}
+
+	public int getCategoryCount(int c) {
+		return catStart.get(c + 1) - catStart.get(c);
+	}
+
+	/**
+	 * @return a copy of the postings of the term with id t, in the heap
+	 */
+	Postings getPostings(int t) {
+		int from = postStart.get(t), to = postStart.get(t + 1);
+		Postings ps = new Postings(to - from);
+		for (int i = from; i < to; i++)
+			ps.put(postDocs.get(i), postCounts.get(i));
+		return ps;
+	}
+
+	/**
+	 * @return a copy of the documents in the category with id c, in the heap
+	 */
+	DocList getDocList(int c) {
+		int from = catStart.get(c), to = catStart.get(c + 1);
+		DocList dl = new DocList(to - from);
+		for (int i = from; i < to; i++)
+			dl.add(catDocs.get(i));
+		return dl;
+	}
+
+	public Postings copyPostings(int t) {
+		return getPostings(t);
+	}
+
+	public DocList copyDocList(int c) {
+		return getDocList(c);
+	}
+
+	public int getJointCount(int t, int c) {
+		int p = binarySearch(rowCats, rowStart.get(t), rowStart.get(t + 1), c);
+		return p < 0 ? 0 : rowCounts.get(p);
+	}
+
+	public int getTermSetSize() {
+		return terms.size();
+	}
+
+	public int getCategSetSize() {
+		return categories.size();
+	}
+
+	public Set<String> getCategorySet() {
+		return categories.keySet();
+	}
+
+	public Set<String> getDocSet() {
+		return docs.keySet();
+	}
+
+	public int getCount(String id, String term) {
+		int t = terms.getId(term);
+		int doc = docs.getId(id);
+		if (t < 0 || doc < 0)
+			return 0;
+		int p = binarySearch(postDocs, postStart.get(t), postStart.get(t + 1),
+				doc);
+		return p < 0 ? 0 : postCounts.get(p);
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public Vector getCategVector(String id) {
+		Vector cv = new Vector();
+		int doc = docs.getId(id);
+		if (doc < 0)
+			return cv;
+		for (int i = docCatStart.get(doc); i < docCatStart.get(doc + 1); i++)
+			cv.add(categories.get(docCatIds.get(i)));
+		return cv;
+	}
+
+	public boolean isIgnoreCase() {
+		return ignoreCase;
+	}
+
+	/*
+	 * The model is read-only
+	 */
+
+	public NewsItemListener getIndexer(StopWordList swlist) {
+		throw new UnsupportedOperationException("read-only model");
+	}
+
+	@SuppressWarnings("rawtypes")
+	public void addNewsItemTerms(String id, BagOfWords bag, Collection categs) {
+		throw new UnsupportedOperationException("read-only model");
+	}
+
+	@SuppressWarnings("rawtypes")
+	public void addNewsItemTerms(String id, WordFrequencyPair[] wfp,
+			Collection categs) {
+		throw new UnsupportedOperationException("read-only model");
+	}
+
+	public void trimTermSet(Set<String> rts) {
+		throw new UnsupportedOperationException("read-only model");
+	}
+
+	public void merge(ProbabilityModel other, boolean replace) {
+		throw new UnsupportedOperationException("read-only model");
+	}
+
+	public void setIgnoreCase(boolean v) {
+		throw new UnsupportedOperationException("read-only model");
+	}
+
+	/**
+	 * A table of strings, each identified by its position in the table,
+	 * stored as: offsets[id] (to offsets[id+1]), the position of each string
+	 * in chars; slots, an open-addressing hash table (of a power of two size,
+	 * probed linearly) of id+1, or 0 for an empty slot; and chars, the
+	 * strings' chars one after another.
+	 */
+	static class MappedStrings {
+
+		private IntBuffer offsets;
+		private IntBuffer slots;
+		private CharBuffer chars;
+
+		MappedStrings(IntBuffer offsets, IntBuffer slots, CharBuffer chars) {
+			this.offsets = offsets;
+			this.slots = slots;
+			this.chars = chars;
+		}
+
+		static int slot(String s, int mask) {
+			int h = s.hashCode();
+			return (h ^ (h >>> 16)) & mask;
+		}
+
+		static void write(DataOutputStream out, List<String> strings)
+				throws IOException {
+			int n = strings.size();
+			out.writeInt(n + 1);
+			int nchars = 0;
+			out.writeInt(0);
+			for (int i = 0; i < n; i++)
+				out.writeInt(nchars += strings.get(i).length());
+			int size = 2;
+			while (size < 2 * n)
+				size *= 2;
+			int[] slots = new int[size];
+			for (int i = 0; i < n; i++) {
+				int h = slot(strings.get(i), size - 1);
+				while (slots[h] != 0)
+					h = (h + 1) & (size - 1);
+				slots[h] = i + 1;
+			}
+			out.writeInt(size);
+			for (int i = 0; i < size; i++)
+				out.writeInt(slots[i]);
+			out.writeInt(nchars);
+			for (int i = 0; i < n; i++)
+				out.writeChars(strings.get(i));
+			if ((nchars & 1) != 0)
+				out.writeChar(0);
+		}
+
+		int size() {
+			return offsets.limit() - 1;
+		}
+
+		String get(int id) {
+			int from = offsets.get(id);
+			char[] cs = new char[offsets.get(id + 1) - from];
+			for (int i = 0; i < cs.length; i++)
+				cs[i] = chars.get(from + i);
+			return new String(cs);
+		}
+
+		/**
+		 * @return the id of s, or -1 if s is not in the table
+		 */
+		int getId(String s) {
+			int mask = slots.limit() - 1;
+			for (int h = slot(s, mask);; h = (h + 1) & mask) {
+				int id = slots.get(h) - 1;
+				if (id < 0 || matches(id, s))
+					return id;
+			}
+		}
+
+		/**
+		 * Compare s with the string with id id in place
+		 */
+		private boolean matches(int id, String s) {
+			int from = offsets.get(id);
+			if (offsets.get(id + 1) - from != s.length())
+				return false;
+			for (int i = 0; i < s.length(); i++)
+				if (chars.get(from + i) != s.charAt(i))
+					return false;
+			return true;
+		}
+
+		StringIndex toStringIndex() {
+			StringIndex si = new StringIndex();
+			for (int i = 0; i < size(); i++)
+				si.add(get(i));
+			return si;
+		}
+
+		/**
+		 * @return the strings, as an (unmodifiable) Set backed by the table
+		 */
+		Set<String> keySet() {
+			return new AbstractSet<String>() {
+				public int size() {
+					return MappedStrings.this.size();
+				}
+
+				public boolean contains(Object o) {
+					return o instanceof String && getId((String) o) >= 0;
+				}
+
+				public Iterator<String> iterator() {
+					return new Iterator<String>() {
+						private int i = 0;
+
+						public boolean hasNext() {
+							return i < MappedStrings.this.size();
+						}
+
+						public String next() {
+							if (!hasNext())
+								throw new NoSuchElementException();
+							return get(i++);
+						}
+
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,253 @@
+package tc.dstruct;
+
+import java.util.Arrays;
+
+/**
+ * The postings of every term of a model (see Postings), kept outside the
+ * heap, for OffHeapProbabilityModel.
+ *
+ * The postings of each term occupy a block of (doc, count) pairs, in
+ * increasing document order, in one of a list of chunks (DirectIntArrays). Blocks have power-of-two sizes; a block which fills up is
+ * replaced by one twice its size, and the old one is kept on a free list for
+ * reuse. Where each term's block starts, its size and the number of postings
+ * in it are kept in three more DirectIntArrays, indexed by term id, so the
+ * table is a few dozen objects to the garbage collector however many terms
+ * and postings it holds.
+ *
+ * Chunks grow as they fill, up to CHUNK ints. A block may not be larger than
+ * a chunk (i.e. a term may occur in at most CHUNK/2 documents), and there are
+ * at most MAX_CHUNKS chunks.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see OffHeapProbabilityModel
+ */
+public class OffHeapPostingsTable {
+
+	/** ints per chunk */
+	static final int CHUNK_BITS = 24;
+	static final int CHUNK = 1 << CHUNK_BITS;
+	/** most chunks, so that an address fits in an int */
+	static final int MAX_CHUNKS = 1 << (31 - CHUNK_BITS);
+	/** log2 of the ints in the first block of a term */
+	private static final int MIN_BITS = 2;
+
+	private DirectIntArray[] chunks = new DirectIntArray[4];
+	private int nchunks = 0;
+	/** next free position in the last chunk */
+	private int top = CHUNK;
+	/** free[k]: addresses of free blocks of 2^k ints (nfree[k] of them) */
+	private int[][] free = new int[CHUNK_BITS + 1][];
+	private int[] nfree = new int[CHUNK_BITS + 1];
+
+	/** address (chunk * CHUNK + offset) of the block of each term */
+	private DirectIntArray start = new DirectIntArray(1024);
+	/** log2 of the size of the block of each term */
+	private DirectIntArray blockBits = new DirectIntArray(1024);
+	private DirectIntArray sizes = new DirectIntArray(1024);
+	private int nterms = 0;
+
+	/**
+	 * @return the address of a new block of 2^bits ints
+	 */
+	private int allocate(int bits) {
+		if (bits > CHUNK_BITS)
+			throw new IllegalStateException("too many postings for a term");
+		if (nfree[bits] > 0)
+			return free[bits][--nfree[bits]];
+		int n = 1 << bits;
+		if (top + n > CHUNK) {
+			if (nchunks == MAX_CHUNKS)
+				throw new IllegalStateException("postings table full");
+			if (nchunks == chunks.length)
+				chunks = Arrays.copyOf(chunks, 2 * nchunks);
+			chunks[nchunks++] = new DirectIntArray(1 << 16);
+			top = 0;
+		}
+		chunks[nchunks - 1].ensureCapacity(top + n);
+		int a = (nchunks - 1) * CHUNK + top;
+		top += n;
+		return a;
+	}
+
+	private void release(int a, int bits) {
+		if (free[bits] == null)
+			free[bits] = new int[16];
+		else if (nfree[bits] == free[bits].length)
+			free[bits] = Arrays.copyOf(free[bits], 2 * nfree[bits]);
+		free[bits][nfree[bits]++] = a;
+	}
+
+	private int getInt(int a) {
+		return chunks[a >>> CHUNK_BITS].get(a & (CHUNK - 1));
+	}
+
+	private void setInt(int a, int v) {
+		chunks[a >>> CHUNK_BITS].set(a & (CHUNK - 1), v);
+	}
+
+	/**
+	 * Add term t (which must be the next term id, i.e. getTermCount())
+	 */
+	private void addTerm() {
+		int t = nterms++;
+		start.ensureCapacity(nterms);
+		blockBits.ensureCapacity(nterms);
+		sizes.ensureCapacity(nterms);
+		start.set(t, allocate(MIN_BITS));
+		blockBits.set(t, MIN_BITS);
+		sizes.set(t, 0);
+	}
+
+	/**
+	 * Record that term t occurs count times in doc, replacing any count
+	 * previously recorded for doc (see Postings.put())
+	 */
+	public void put(int t, int doc, int count) {
+		while (t >= nterms)
+			addTerm();
+		int n = sizes.get(t);
+		int a = start.get(t);
+		int p;
+		if (n == 0 || getInt(a + 2 * (n - 1)) < doc)
+			p = n;
+		else {
+			p = indexOf(t, doc);
+			if (p >= 0) {
+				setInt(a + 2 * p + 1, count);
+				return;
+			}
+			p = -(p + 1);
+		}
+		int bits = blockBits.get(t);
+		if (2 * (n + 1) > 1 << bits) {
+			int na = allocate(bits + 1);
+			for (int i = 0; i < 2 * n; i++)
+				setInt(na + i, getInt(a + i));
+			release(a, bits);
+			a = na;
+			start.set(t, a);
+			blockBits.set(t, bits + 1);
+		}
+		for (int i = 2 * n - 1; i >= 2 * p; i--)
+			setInt(a + i + 2, getInt(a + i));
+		setInt(a + 2 * p, doc);
+		setInt(a + 2 * p + 1, count);
+		sizes.set(t, n + 1);
+	}
+
+	public int getTermCount() {
+		return nterms;
+	}
+
+	/**
+	 * @return number of documents term t occurs in
+	 */
+	public int size(int t) {
+		return sizes.get(t);
+	}
+
+	/**
+	 * @return the i-th document term t occurs in
+	 */
+	public int getDoc(int t, int i) {
+		return getInt(start.get(t) + 2 * i);
+	}
+
+	/**
+	 * @return number of occurrences of term t in its i-th document
+	 */
+	public int getCount(int t, int i) {
+		return getInt(start.get(t) + 2 * i + 1);
+	}
+
+	/**
+	 * @return position of doc among the documents of term t, or -(insertion
+	 *         point + 1) if t doesn't occur in doc
+	 */
+	public int indexOf(int t, int doc) {
+		int a = start.get(t);
+		int lo = 0, hi = sizes.get(t) - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int d = getInt(a + 2 * mid);
+			if (d < doc)
+				lo = mid + 1;
+			else if (d > doc)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -(lo + 1);
+	}
+
+	/**
+	 * @return number of occurrences of term t in doc (0 if it doesn't occur
+	 *         in doc)
+	 */
+	public int getDocCount(int t, int doc) {
+		int p = indexOf(t, doc);
+		return p < 0 ? 0 : getCount(t, p);
+	}
+
+	/**
+	 * Copy the documents of term t into docs (or into a larger array, if
+	 * docs is too small) and return it
+	 */
+	public int[] getDocs(int t, int[] docs) {
+		int n = sizes.get(t);
+		if (docs.length < n)
+			docs = new int[Math.max(n, 2 * docs.length)];
+		int a = start.get(t);
+		for (int i = 0; i < n; i++)
+			docs[i] = getInt(a + 2 * i);
+		return docs;
+	}
+
+	/**
+	 * @return a copy of the postings of term t in the heap
+	 */
+	public Postings toPostings(int t) {
+		int n = sizes.get(t);
+		Postings ps = new Postings(n);
+		for (int i = 0; i < n; i++)
+			ps.put(getDoc(t, i), getCount(t, i));
+		return ps;
+	}
+
+	/**
+	 * Keep only the terms for which keep is true, renumbered in order (as
+	 * ProbabilityModel.trimTermSet() renumbers them), and free the blocks of
+	 * the others
+	 */
+	public void retain(boolean[] keep) {
+		int r = 0;
+		for (int t = 0; t < nterms; t++)
+			if (keep[t]) {
+				start.set(r, start.get(t));
+				blockBits.set(r, blockBits.get(t));
+				sizes.set(r, sizes.get(t));
+				r++;
+			} else
+				release(start.get(t), blockBits.get(t));
+		nterms = r;
+	}
+
+	/**
+	 * @return bytes of memory held outside the heap
+	 */
+	public long bytes() {
+		long b = start.bytes() + blockBits.bytes() + sizes.bytes();
+		for (int i = 0; i < nchunks; i++)
+			b += chunks[i].bytes();
+		return b;
+	}
+
+	public void close() {
+		for (int i = 0; i < nchunks; i++)
+			chunks[i].close();
+		chunks = null;
+		start.close();
+		blockBits.close();
+		sizes.close();
+	}
+}
@@ -0,0 +1,140 @@
+package tc.dstruct;
+
+import java.io.ObjectStreamException;
+import java.util.Set;
+
+/**
+ * A ProbabilityModel which keeps its term index (the term dictionary and the
+ * postings of each term) and its document dictionary outside the heap, in an
+ * OffHeapStringIndex and an OffHeapPostingsTable. Those are where a large
+ * model built from an untrimmed vocabulary puts most of its objects (several
+ * per term and per document), which the garbage collector must otherwise
+ * trace and copy over and over while the model is built. The category index
+ * (a few large doc lists) and the term/category matrix (three int arrays)
+ * stay in the heap.
+ *
+ * The model is built and queried through the same methods as a
+ * ProbabilityModel (see ProbabilityModel.newInstance()). Its memory is
+ * released by close(), after which it may not be used. It is serialized as
+ * the equivalent ProbabilityModel.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see ProbabilityModel
+ * @see OffHeapPostingsTable
+ */
+public class OffHeapProbabilityModel extends ProbabilityModel {
+
+	private static final long serialVersionUID = 1L;
+	private transient OffHeapPostingsTable postings = new OffHeapPostingsTable();
+
+	public OffHeapProbabilityModel() {
+		super(new OffHeapStringIndex(), new Postings[1], new StringIndex(),
+				new DocList[16], new OffHeapStringIndex(), new int[1024][], 0,
+				true);
+	}
+
+	void putIntoTTable(String term, int doc, int count) {
+		postings.put(getTermIndex().add(term), doc, count);
+	}
+
+	void putPostings(String term, Postings ps, int[] docMap) {
+		int t = getTermIndex().add(term);
+		for (int i = 0; i < ps.size(); i++)
+			postings.put(t, docMap[ps.get(i)], ps.getCount(i));
+	}
+
+	TermCategoryMatrix buildMatrix(int[][] docCats, int ncats) {
+		return new TermCategoryMatrix(postings, docCats, ncats);
+	}
+
+	StringIndex newTermIndex() {
+		return new OffHeapStringIndex();
+	}
+
+	void retainPostings(boolean[] keep, int nkept) {
+		postings.retain(keep);
+	}
+
+	public void trimTermSet(Set<String> rts) {
+		OffHeapStringIndex terms = (OffHeapStringIndex) getTermIndex();
+		super.trimTermSet(rts);
+		terms.close();
+	}
+
+	/**
+	 * @return a copy of the postings of the term with id t, in the heap
+	 */
+	Postings getPostings(int t) {
+		return postings.toPostings(t);
+	}
+
+	public Postings copyPostings(int t) {
+		return getPostings(t);
+	}
+
+	public int getTermCount(int t) {
+		return postings.size(t);
+	}
+
+	public int getCount(String id, String term) {
+		int t = getTermId(term);
+		int doc = getDocIndex().getId(id);
+		if (t < 0 || doc < 0)
+			return 0;
+		return postings.getDocCount(t, doc);
+	}
+
+	/**
+	 * @return bytes of memory held outside the heap
+	 */
+	public long getOffHeapBytes() {
+		return ((OffHeapStringIndex) getTermIndex()).bytes()
+				+ ((OffHeapStringIndex) getDocIndex()).bytes()
+				+ postings.bytes();
+	}
+
+	/**
+	 * Release the memory held outside the heap
+	 */
+	public void close() {
+		((OffHeapStringIndex) getTermIndex()).close();
+		((OffHeapStringIndex) getDocIndex()).close();
+		postings.close();
+	}
+
+	/**
+	 * @return a copy of this model in the heap
+	 */
+	public ProbabilityModel toProbabilityModel() {
+		StringIndex terms = new StringIndex();
+		Postings[] tTable = new Postings[Math.max(1, getTermSetSize())];
+		for (int t = 0; t < getTermSetSize(); t++) {
+			terms.add(getTerm(t));
+			tTable[t] = postings.toPostings(t);
+		}
+		StringIndex categories = new StringIndex();
+		DocList[] cTable = new DocList[Math.max(1, getCategSetSize())];
+		for (int c = 0; c < getCategSetSize(); c++) {
+			categories.add(getCategoryIndex().get(c));
+			DocList dl = getDocList(c);
+			cTable[c] = new DocList(dl.size());
+			for (int i = 0; i < dl.size(); i++)
+				cTable[c].add(dl.get(i));
+		}
+		StringIndex docSet = new StringIndex();
+		int[][] docCats = new int[Math.max(1, getDocIndex().size())][];
+		for (int d = 0; d < getDocIndex().size(); d++) {
+			docSet.add(getDocIndex().get(d));
+			docCats[d] = getDocCategories(d);
+		}
+		return new ProbabilityModel(terms, tTable, categories, cTable, docSet,
+				docCats, corpusSize, isIgnoreCase());
+	}
+
+	/**
+	 * Serialize the model as the equivalent ProbabilityModel
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		return toProbabilityModel();
+	}
+}
@@ -0,0 +1,194 @@
+package tc.dstruct;
+
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A StringIndex kept outside the heap: the strings' chars one after another,
+ * the position of each string among them, and an open-addressing hash table
+ * of ids (laid out as in MappedProbabilityModel's string tables), in direct
+ * buffers. It thus holds no String, Integer or map entry per string, only a
+ * few buffers however many strings it indexes; get() makes a new String each
+ * time it is called.
+ *
+ * close() releases the buffers (see DirectIntArray). An OffHeapStringIndex is
+ * serialized as an equivalent StringIndex.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see OffHeapProbabilityModel
+ */
+public class OffHeapStringIndex extends StringIndex {
+
+	private static final long serialVersionUID = 1L;
+	/** offsets[id] to offsets[id+1]-1: the chars of the string with id id */
+	private transient DirectIntArray offsets = new DirectIntArray(1024);
+	/** hash table of id+1 (0 for an empty slot), half full at most */
+	private transient DirectIntArray slots = new DirectIntArray(1024);
+	/** the buffer which chars views (see DirectIntArray.free()) */
+	private transient ByteBuffer charBuffer;
+	private transient CharBuffer chars = allocate(8192);
+	private transient int size = 0;
+
+	public OffHeapStringIndex() {
+		super();
+		offsets.set(0, 0);
+	}
+
+	private CharBuffer allocate(long capacity) {
+		if (capacity > Integer.MAX_VALUE / 2)
+			throw new OutOfMemoryError("OffHeapStringIndex of " + capacity
+					+ " chars (at most " + Integer.MAX_VALUE / 2 + ")");
+		charBuffer = ByteBuffer.allocateDirect(2 * (int) capacity).order(
+				ByteOrder.nativeOrder());
+		return charBuffer.asCharBuffer();
+	}
+
+	public int add(String s) {
+		int mask = slots.capacity() - 1;
+		int h = MappedProbabilityModel.MappedStrings.slot(s, mask);
+		for (;; h = (h + 1) & mask) {
+			int id = slots.get(h) - 1;
+			if (id < 0)
+				break;
+			if (matches(id, s))
+				return id;
+		}
+		int end = offsets.get(size);
+		if (end + s.length() > chars.capacity()) {
+			ByteBuffer old = charBuffer;
+			CharBuffer nchars = allocate(Math.max((long) end + s.length(),
+					Math.min(2L * chars.capacity(), Integer.MAX_VALUE / 2)));
+			chars.clear();
+			chars.limit(end);
+			nchars.put(chars);
+			chars = nchars;
+			DirectIntArray.free(old);
+		}
+		for (int i = 0; i < s.length(); i++)
+			chars.put(end + i, s.charAt(i));
+		int id = size++;
+		offsets.ensureCapacity(size + 1);
+		offsets.set(size, end + s.length());
+		slots.set(h, id + 1);
+		if (2 * size > slots.capacity())
+			rehash(2 * slots.capacity());
+		return id;
+	}
+
+	private void rehash(int capacity) {
+		slots.close();
+		slots = new DirectIntArray(capacity);
+		int mask = capacity - 1;
+		for (int id = 0; id < size; id++) {
+			int h = MappedProbabilityModel.MappedStrings.slot(get(id), mask);
+			while (slots.get(h) != 0)
+				h = (h + 1) & mask;
+			slots.set(h, id + 1);
+		}
+	}
+
+	/**
+	 * Compare s with the string with id id in place
+	 */
+	private boolean matches(int id, String s) {
+		int from = offsets.get(id);
+		if (offsets.get(id + 1) - from != s.length())
+			return false;
+		for (int i = 0; i < s.length(); i++)
+			if (chars.get(from + i) != s.charAt(i))
+				return false;
+		return true;
+	}
+
+	public int getId(String s) {
+		int mask = slots.capacity() - 1;
+		for (int h = MappedProbabilityModel.MappedStrings.slot(s, mask);; h = (h + 1)
+				& mask) {
+			int id = slots.get(h) - 1;
+			if (id < 0 || matches(id, s))
+				return id;
+		}
+	}
+
+	public boolean contains(String s) {
+		return getId(s) >= 0;
+	}
+
+	public String get(int id) {
+		int from = offsets.get(id);
+		char[] cs = new char[offsets.get(id + 1) - from];
+		for (int i = 0; i < cs.length; i++)
+			cs[i] = chars.get(from + i);
+		return new String(cs);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the indexed Strings, in id order, as a (read-only) view
+	 */
+	public List<String> getStrings() {
+		return new AbstractList<String>() {
+			public String get(int id) {
+				return OffHeapStringIndex.this.get(id);
+			}
+
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	public Set<String> keySet() {
+		return new AbstractSet<String>() {
+			public int size() {
+				return size;
+			}
+
+			public boolean contains(Object o) {
+				return o instanceof String && getId((String) o) >= 0;
+			}
+
+			public Iterator<String> iterator() {
+				return getStrings().iterator();
+			}
+		};
+	}
+
+	/**
+	 * @return bytes of memory held outside the heap
+	 */
+	public long bytes() {
+		return offsets.bytes() + slots.bytes()
+				+ (chars == null ? 0 : 2L * chars.capacity());
+	}
+
+	public void close() {
+		offsets.close();
+		slots.close();
+		if (charBuffer != null) {
+			chars = null;
+			DirectIntArray.free(charBuffer);
+			charBuffer = null;
+		}
+	}
+
+	/**
+	 * Serialize the index as the equivalent StringIndex
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		StringIndex si = new StringIndex();
+		for (int id = 0; id < size; id++)
+			si.add(get(id));
+		return si;
+	}
+}
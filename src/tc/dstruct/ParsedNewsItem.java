@@ -4,7 +4,7 @@ import java.util.Vector;
 import java.util.Enumeration;
 
 /**
- *  Store text (as a StringBuffer), its id (as a String), and the
+ *  Store text (as a String), its id (as a String), and the
  *  categories to which it belongs (as a vector)
  *
  * @author  Saturnino Luz &#60;luzs@acm.org&#62;
@@ -14,15 +14,16 @@ import java.util.Enumeration;
 public class ParsedNewsItem {
 
   private Vector categs = null;
-  private StringBuffer text   = null;
+  private String text   = null;
   private String id = null;
+  private TokenSequence tokens = null;
 
   public ParsedNewsItem (Vector categs, String text, String id)
   {
     super();
     this.id = id;
     this.categs = categs;
-    this.text = new StringBuffer(text);
+    this.text = text;
   }
 
   public ParsedNewsItem (String text, String id)
@@ -30,7 +31,7 @@ public class ParsedNewsItem {
     super();
     this.id = id;
     this.categs = new Vector();
-    this.text = new StringBuffer(text);
+    this.text = text;
   }
 
   public ParsedNewsItem ()
@@ -50,9 +51,9 @@ public class ParsedNewsItem {
   public void addText (String text)
   {
     if (this.text == null)
-      this.text = new StringBuffer(text);
+      this.text = text;
     else
-      this.text = this.text.append(" "+text);
+      this.text = this.text.concat(" ").concat(text);
   }
 
   public Enumeration getCategories ()
@@ -66,14 +67,20 @@ public class ParsedNewsItem {
     return categs;
   }
 
+  /**
+   * Return the text, or (for items read from a pre-tokenised corpus,
+   * which have no text) the tokens separated by spaces
+   */
   public String getText ()
   {
-    return  text+"";
+    if (text == null && tokens != null)
+      return tokens.toString();
+    return  String.valueOf(text);
   }
 
   public void setText (String text)
   {
-    this.text = new StringBuffer(text);
+    this.text = text;
   }
 
   public boolean isOfCategory(String cat){
@@ -90,6 +97,19 @@ public class ParsedNewsItem {
     return barcat? true : false;
   }
 
+  /**
+   * Get the tokens of this item's text, if it has been tokenised
+   * already (see tc.parser.CorpusCache)
+   * @return the token sequence, or null
+   */
+  public TokenSequence getTokenSequence() {
+    return tokens;
+  }
+
+  public void setTokenSequence(TokenSequence v) {
+    this.tokens = v;
+  }
+
   /**
    * Get the value of id.
    * @return value of id.
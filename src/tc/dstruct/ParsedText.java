@@ -1,4 +1,5 @@
 package tc.dstruct;
+import tc.parser.NewsItemListener;
 import java.io.*;
 import java.util.Vector;
 import java.util.Enumeration;
@@ -9,7 +10,7 @@ import java.util.Enumeration;
  * @version <font size=-1>$Id: ParsedText.java,v 1.5 2004/03/25 16:09:43 luzs Exp $</font>
  * @see  
 */
-public class ParsedText extends Vector
+public class ParsedText extends Vector implements NewsItemListener
 {
 
   public ParsedText () 
@@ -21,6 +22,10 @@ public class ParsedText extends Vector
     return add(pni);
   }
 
+  public void newsItem (ParsedNewsItem pni){
+    addNewsItem(pni);
+  }
+
   public void append(ParsedText pt){
     try {
       addAll(pt);
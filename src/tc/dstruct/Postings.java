@@ -0,0 +1,77 @@
+package tc.dstruct;
+
+import java.util.Arrays;
+
+/**
+ * The postings of a term: the (int) ids of the documents it occurs in, in
+ * increasing order, and the number of times it occurs in each, kept in two
+ * parallel int arrays.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see ProbabilityModel
+ */
+public class Postings extends DocList {
+
+	private static final long serialVersionUID = 1L;
+	private int[] counts;
+
+	public Postings() {
+		this(4);
+	}
+
+	public Postings(int capacity) {
+		super(capacity);
+		counts = new int[docs.length];
+	}
+
+	/**
+	 * Record that the term occurs count times in doc, replacing any count
+	 * previously recorded for doc.
+	 */
+	public void put(int doc, int count) {
+		int p = add(doc);
+		counts[p < 0 ? -(p + 1) : p] = count;
+	}
+
+	void insertAt(int p, int doc) {
+		super.insertAt(p, doc);
+		System.arraycopy(counts, p, counts, p + 1, size - 1 - p);
+	}
+
+	void grow(int capacity) {
+		super.grow(capacity);
+		counts = Arrays.copyOf(counts, capacity);
+	}
+
+	/**
+	 * @return a copy of the postings, with no spare capacity
+	 */
+	public Postings copy() {
+		Postings ps = new Postings(size);
+		System.arraycopy(docs, 0, ps.docs, 0, size);
+		System.arraycopy(counts, 0, ps.counts, 0, size);
+		ps.size = size;
+		return ps;
+	}
+
+	public long bytes() {
+		return super.bytes() + 16 + 4L * counts.length;
+	}
+
+	/**
+	 * @return number of occurrences of the term in the i-th document of the
+	 *         list
+	 */
+	public int getCount(int i) {
+		return counts[i];
+	}
+
+	/**
+	 * @return number of occurrences of the term in doc (0 if it doesn't occur
+	 *         in doc)
+	 */
+	public int getDocCount(int doc) {
+		int p = indexOf(doc);
+		return p < 0 ? 0 : counts[p];
+	}
+}
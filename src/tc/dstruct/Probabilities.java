@@ -33,6 +33,28 @@ public class Probabilities {
   }
 
 
+  /**
+   * Estimate the probabilities from document counts: tc documents
+   * containing the term and in the category, t documents containing
+   * the term, c documents in the category, and n documents in all
+   */
+  public static Probabilities fromCounts(int tc, int t, int c, int n)
+  {
+    // p(t) = number of documents containing t / number of documents
+    double pT = (double) t / (double) n;
+    // p(c) = number of documents in c / number of documents
+    double pC = (double) c / (double) n;
+    // p(t, c)
+    double pTAndC = (double) tc / (double) n;
+    // p(t, ^c) = p(t) - p(t, c)
+    double pTAnd_C = (double) (t - tc) / (double) n;
+    // p(^t, c) = p(c) - p(t, c)
+    double p_TAndC = (double) (c - tc) / (double) n;
+    // p(^t, ^c) = 1 - p(t) - p(c) + p(t, c)
+    double p_TAnd_C = (double) (n - (c + t - tc)) / (double) n;
+    return new Probabilities(pT, pC, pTAndC, pTAnd_C, p_TAndC, p_TAnd_C);
+  }
+
   public double getPTgivenC(){
     return  tc / c;
   }
@@ -1,18 +1,16 @@
 package tc.dstruct;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 
+import tc.parser.NewsItemListener;
 import tc.parser.Tokenizer;
 import tc.util.PrintUtil;
 
@@ -21,6 +19,20 @@ import tc.util.PrintUtil;
  * form the basis of a probability model (see tTable and cTable vars below), and
  * implement methods to estimate probabilities based on these indices.
  * 
+ * Once built, a model may be read (e.g. have its probabilities estimated) by
+ * several threads at once, but it must not be modified (by adding documents
+ * to it or trimming its term set) while it is being read.
+ * 
+ * Probabilities are estimated from the document counts returned by
+ * getTermCount(int), getCategoryCount(int) and getJointCount(int, int), so a
+ * subclass which keeps its indices elsewhere (see MappedProbabilityModel)
+ * need only override those and the other id-based accessors.
+ * 
+ * New models are made by newInstance(), which keeps the term index in the
+ * heap or, if the system property tc.model.storage is 'offheap', outside it
+ * (see OffHeapProbabilityModel). Models built separately from parts of a
+ * corpus may be combined with merge().
+ * 
  * @author S Luz &#60;luzs@acm.org&#62;
  * @version <font size=-1>$Id: ProbabilityModel.java,v 1.6 2004/03/29 14:11:18
  *          luzs Exp $</font>
@@ -31,36 +43,92 @@ public class ProbabilityModel implements Serializable {
 	/**
 	 * 
 	 */
-	private static final long serialVersionUID = 1L;
+	private static final long serialVersionUID = 2L;
+	/**
+	 * Name of the system property which selects where newInstance() keeps
+	 * the indices: 'heap' (default) or 'offheap'
+	 */
+	public static final String STORAGE_PROPERTY = "tc.model.storage";
+	public static final String HEAP_STORAGE = "heap";
+	public static final String OFFHEAP_STORAGE = "offheap";
 	private boolean ignoreCase = true;
 	/**
-	 * term table: ( term1 , [(doc_id1, No_of_occurrences_of_term1_in_id1), ...,
-	 * (doc_idn, No_of_occurrences_of_term1_in_idn)], ... termk , [(doc_idm,
-	 * No_of_occurrences_of_termk_in_idm), ..., (doc_idz,
-	 * No_of_occurrences_of_termk_in_idz)]) where term is a String and the
-	 * elements of its Map value are No. of occurences, indexed by doc_id's.
+	 * term dictionary: maps each term to an int term id (0, 1, ...), which
+	 * indexes tTable
 	 */
-	private Map<String, Map<String, Integer>> tTable = new HashMap<String, Map<String, Integer>>();
+	private StringIndex terms = new StringIndex();
+	/**
+	 * term table: tTable[term_id] holds the postings of a term: [(doc1,
+	 * No_of_occurrences_of_term_in_doc1), ..., (docn,
+	 * No_of_occurrences_of_term_in_docn)], where doc1 < ... < docn are int
+	 * document ids (see docSet), in two parallel int arrays.
+	 */
+	private Postings[] tTable = new Postings[1024];
 
 	/**
-	 * category table: ( cat1 , [id1, ..., idn] ... catk , [id1, ..., idn] )
-	 * where cat (the key) is a String and the elements of its HashSet values
-	 * are Strings (the same type as IDs, above)
+	 * category table: cTable[cat_id] holds the (sorted int) ids of the
+	 * documents in a category, where cat_id is the id of the category in
+	 * categories.
 	 */
-	private Map<String, Set<String>> cTable = new HashMap<String, Set<String>>();
+	private StringIndex categories = new StringIndex();
+	private DocList[] cTable = new DocList[16];
 	/**
-	 * store the set of documents that make up this ProbabilityModel.
+	 * store the set of documents that make up this ProbabilityModel, and map
+	 * their (String) IDs to the int document ids used in tTable and cTable.
 	 */
-	private Set<String> docSet = new HashSet<String>();
+	private StringIndex docSet = new StringIndex();
+	/**
+	 * forward index: docCats[doc] holds the (sorted) ids of the categories
+	 * document doc belongs to
+	 */
+	private int[][] docCats = new int[1024][];
+	private static final int[] NO_CATEGORIES = new int[0];
 	public int corpusSize = 0;
+	/**
+	 * joint document counts of terms and categories, from which
+	 * getProbabilities() estimates P(t, c); built from tTable and cTable
+	 * when first needed (see getMatrix()), dropped when a document is added
+	 * and trimmed along with tTable. (Volatile, as concurrent readers may
+	 * race to build it.)
+	 */
+	private volatile TermCategoryMatrix tcMatrix = null;
 
 	public ProbabilityModel() {
 	}
 
+	/**
+	 * @return a new, empty model, an OffHeapProbabilityModel if the
+	 *         STORAGE_PROPERTY system property is 'offheap'
+	 */
+	public static ProbabilityModel newInstance() {
+		if (OFFHEAP_STORAGE.equals(System.getProperty(STORAGE_PROPERTY,
+				HEAP_STORAGE)))
+			return new OffHeapProbabilityModel();
+		return new ProbabilityModel();
+	}
+
 	public ProbabilityModel(ParsedText pt, StopWordList swlist) {
 		addParsedText(pt, swlist);
 	}
 
+	/**
+	 * Make a model of indices built elsewhere (see
+	 * MappedProbabilityModel.toProbabilityModel()). The term/category matrix
+	 * is built when first needed.
+	 */
+	ProbabilityModel(StringIndex terms, Postings[] tTable,
+			StringIndex categories, DocList[] cTable, StringIndex docSet,
+			int[][] docCats, int corpusSize, boolean ignoreCase) {
+		this.terms = terms;
+		this.tTable = tTable;
+		this.categories = categories;
+		this.cTable = cTable;
+		this.docSet = docSet;
+		this.docCats = docCats;
+		this.corpusSize = corpusSize;
+		this.ignoreCase = ignoreCase;
+	}
+
 	/**
 	 * ******************** Lab 02: Exercise *********************
 	 * 
@@ -70,14 +138,32 @@ public class ProbabilityModel implements Serializable {
 	 * also addParsedNewsItem, which will actually do the indexing.
 	 */
 	public void addParsedText(ParsedText pt, StopWordList swlist) {
-		for (Iterator i = pt.iterator(); i.hasNext();) {
-			corpusSize++;
-			PrintUtil.printNoMove("Generating prob models ...", corpusSize);
-			addParsedNewsItem((ParsedNewsItem) i.next(), swlist);
-		}
+		NewsItemListener indexer = getIndexer(swlist);
+		for (Iterator i = pt.iterator(); i.hasNext();)
+			indexer.newsItem((ParsedNewsItem) i.next());
 		PrintUtil.donePrinting();
 	}
 
+	/**
+	 * Return a listener which indexes (as addParsedText does) each news item
+	 * it receives. Pass it to NewsParser.parse(NewsItemListener) to build the
+	 * model one news item at a time, without materialising a ParsedText.
+	 */
+	public NewsItemListener getIndexer(final StopWordList swlist) {
+		return new NewsItemListener() {
+			// reused for every news item
+			private BagOfWords bag = new BagOfWords();
+
+			public void newsItem(ParsedNewsItem pni) {
+				corpusSize++;
+				PrintUtil.printNoMove("Generating prob models ...", corpusSize);
+				bag.clear();
+				bag.addTokens(pni, swlist);
+				addNewsItemTerms(pni.getId(), bag, pni.getCategVector());
+			}
+		};
+	}
+
 	/**
 	 * ******************** Lab 02: Exercise *********************
 	 * 
@@ -89,56 +175,233 @@ public class ProbabilityModel implements Serializable {
 	 * 
 	 * TIP: Use BagOfWords for tokenising pni.
 	 */
-	@SuppressWarnings("unchecked")
 	public void addParsedNewsItem(ParsedNewsItem pni, StopWordList swlist) {
-		String id = pni.getId();
-		docSet.add(id);
 		// System.err.println("Generating set of words for text ID "+id);
-		WordFrequencyPair[] wfp = (new BagOfWords(pni.getText(), swlist))
-				.getWordFrequencyArray();
+		addNewsItemTerms(pni.getId(), new BagOfWords(pni, swlist), pni
+				.getCategVector());
+	}
+
+	/**
+	 * Index a news item which has already been tokenised into bag: put each
+	 * term in bag into tTable, each category in categs into cTable, and id
+	 * into docSet. Tokenising is the expensive part of addParsedNewsItem, so
+	 * it can be done elsewhere (e.g. on another thread) and the result passed
+	 * here.
+	 */
+	public void addNewsItemTerms(String id, BagOfWords bag, Collection categs) {
+		int doc = addDocument(id);
+		for (int i = 0; i < bag.size(); i++)
+			putIntoTTable(bag.getTerm(i), doc, bag.getCount(i));
+		for (Iterator k = categs.iterator(); k.hasNext();)
+			putIntoCTable((String) k.next(), doc);
+	}
+
+	/**
+	 * Index a news item whose terms and counts are given in wfp (see
+	 * addNewsItemTerms(String, BagOfWords, Collection))
+	 */
+	public void addNewsItemTerms(String id, WordFrequencyPair[] wfp,
+			Collection categs) {
+		int doc = addDocument(id);
 		// System.err.println("Updating terms index");
 		for (int i = 0; i < wfp.length; i++)
-			putIntoTTable(wfp[i].getWord(), id, wfp[i].getIntegerCount());
+			putIntoTTable(wfp[i].getWord(), doc, wfp[i].getCount());
 		// System.err.println("Updating categories index");
-		for (Iterator k = pni.getCategVector().iterator(); k.hasNext();)
-			putIntoCTable((String) k.next(), id);
+		for (Iterator k = categs.iterator(); k.hasNext();)
+			putIntoCTable((String) k.next(), doc);
+	}
+
+	/**
+	 * Add id to docSet (if it isn't there yet) and return its document id
+	 */
+	private int addDocument(String id) {
+		tcMatrix = null;
+		int doc = docSet.add(id);
+		if (doc == docCats.length)
+			docCats = Arrays.copyOf(docCats, 2 * doc);
+		if (docCats[doc] == null)
+			docCats[doc] = NO_CATEGORIES;
+		return doc;
 	}
 
 	// return set containing all categories that occur in the corpus
 	public Set<String> getCategorySet() {
-		return cTable.keySet();
+		return categories.keySet();
 	}
 
 	public Set<String> getDocSet() {
+		return docSet.keySet();
+	}
+
+	/**
+	 * Record that term occurs count times in doc (replacing the count
+	 * recorded for doc, if the same document is indexed twice)
+	 */
+	void putIntoTTable(String term, int doc, int count) {
+		int t = terms.add(term);
+		if (t == tTable.length)
+			tTable = Arrays.copyOf(tTable, 2 * t);
+		if (tTable[t] == null)
+			tTable[t] = new Postings();
+		tTable[t].put(doc, count);
+	}
+
+	/**
+	 * Record the postings ps of term, whose document ids are mapped to this
+	 * model's by docMap (see merge())
+	 */
+	void putPostings(String term, Postings ps, int[] docMap) {
+		int t = terms.add(term);
+		if (t == tTable.length)
+			tTable = Arrays.copyOf(tTable, 2 * t);
+		if (tTable[t] == null)
+			tTable[t] = new Postings(ps.size());
+		for (int i = 0; i < ps.size(); i++)
+			tTable[t].put(docMap[ps.get(i)], ps.getCount(i));
+	}
+
+	/**
+	 * Add document doc to the set of documents categorised as cat
+	 */
+	private void putIntoCTable(String cat, int doc) {
+		int c = categories.add(cat);
+		if (c == cTable.length)
+			cTable = Arrays.copyOf(cTable, 2 * c);
+		if (cTable[c] == null)
+			cTable[c] = new DocList();
+		if (cTable[c].add(doc) >= 0)
+			addDocCategory(doc, c);
+	}
+
+	/**
+	 * Add category c to the forward index entry of doc, keeping it sorted
+	 */
+	private void addDocCategory(int doc, int c) {
+		int[] cs = docCats[doc];
+		int p = -(Arrays.binarySearch(cs, c) + 1);
+		int[] ncs = new int[cs.length + 1];
+		System.arraycopy(cs, 0, ncs, 0, p);
+		ncs[p] = c;
+		System.arraycopy(cs, p, ncs, p + 1, cs.length - p);
+		docCats[doc] = ncs;
+	}
+
+	/**
+	 * @return the postings of term, or null if term is not in the model
+	 */
+	private Postings getPostings(String term) {
+		int t = terms.getId(term);
+		return t < 0 ? null : tTable[t];
+	}
+
+	/**
+	 * Accessors to the indices, for MappedProbabilityModel.write()
+	 */
+	StringIndex getTermIndex() {
+		return terms;
+	}
+
+	StringIndex getCategoryIndex() {
+		return categories;
+	}
+
+	StringIndex getDocIndex() {
 		return docSet;
 	}
 
 	/**
-	 * Add file (id) to the set of files categorised as cat Return true if cat
-	 * is new to cTable, false otherwise.
+	 * @return the postings of the term with id t (not to be modified)
+	 */
+	Postings getPostings(int t) {
+		return tTable[t];
+	}
+
+	/**
+	 * @return the documents in the category with id c (not to be modified)
+	 */
+	DocList getDocList(int c) {
+		return cTable[c];
+	}
+
+	/**
+	 * @return a copy of the postings of the term with id t
+	 */
+	public Postings copyPostings(int t) {
+		return getPostings(t).copy();
+	}
+
+	/**
+	 * @return a copy of the documents in the category with id c
+	 */
+	public DocList copyDocList(int c) {
+		return getDocList(c).copy();
+	}
+
+	int[] getDocCategories(int doc) {
+		return docCats[doc];
+	}
+
+	/**
+	 * Return the term/category matrix, building it if the model has changed
+	 * since it was last built. Only one thread builds it, the others wait
+	 * for it.
+	 */
+	TermCategoryMatrix getMatrix() {
+		TermCategoryMatrix m = tcMatrix;
+		if (m != null)
+			return m;
+		synchronized (this) {
+			if (tcMatrix == null)
+				tcMatrix = buildMatrix(docCats, categories.size());
+			return tcMatrix;
+		}
+	}
+
+	/**
+	 * Build the term/category matrix from the postings, given the categories
+	 * of each document and the number of categories
 	 */
-	private Object putIntoTTable(String term, String id, Integer count) {
-		Map<String, Integer> idset = tTable.get(term);
-		if (idset == null)
-			idset = new HashMap<String, Integer>();
-		idset.put(id, count);
-		return tTable.put(term, idset);
+	TermCategoryMatrix buildMatrix(int[][] docCats, int ncats) {
+		return new TermCategoryMatrix(tTable, terms.size(), docCats, ncats);
 	}
 
 	/**
-	 * Add file (id) to the set of files categorised as cat Return true if cat
-	 * is new to cTable, false otherwise.
+	 * @return number of documents which contain term t and are in category
+	 *         c
 	 */
-	private Object putIntoCTable(String cat, String id) {
-		Set<String> idset = cTable.get(cat);
-		if (idset == null)
-			idset = new HashSet<String>();
-		idset.add(id);
-		return cTable.put(cat, idset);
+	private int intersectionCount(int t, int c) {
+		return getMatrix().getCount(t, c);
+	}
+
+	/**
+	 * Build the term/category matrix (if necessary) before saving, so that it
+	 * need not be rebuilt when the model is loaded
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		getMatrix();
+		if (docCats.length > docSet.size())
+			docCats = Arrays.copyOf(docCats, Math.max(1, docSet.size()));
+		out.defaultWriteObject();
+	}
+
+	/**
+	 * Rebuild the forward index if the model was saved without one
+	 */
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		if (docCats == null) {
+			docCats = new int[Math.max(1, docSet.size())][];
+			for (int d = 0; d < docSet.size(); d++)
+				docCats[d] = NO_CATEGORIES;
+			for (int c = 0; c < categories.size(); c++)
+				for (int i = 0; i < cTable[c].size(); i++)
+					addDocCategory(cTable[c].get(i), c);
+		}
 	}
 
 	public boolean containsTerm(String term) {
-		return tTable.containsKey(term);
+		return getTermId(term) >= 0;
 	}
 
 	/**
@@ -155,8 +418,8 @@ public class ProbabilityModel implements Serializable {
 			cat = Tokenizer.disbar(cat);
 			barcat = true;
 		}
-		Set cs = (Set) cTable.get(cat);
-		int css = cs == null ? 0 : cs.size();
+		int cid = getCategoryId(cat);
+		int css = cid < 0 ? 0 : getCategoryCount(cid);
 		double c = (double) css / corpusSize; // p(c)
 		return barcat ? 1 - c : c;
 	}
@@ -169,124 +432,240 @@ public class ProbabilityModel implements Serializable {
 	 * in class Probabilities) and return a Probabilities object.
 	 */
 	public Probabilities getProbabilities(String term, String cat) {
-		// *** this return statement is just a place holder. you'll need to
-		// modify it
-		Set ts = tTable.containsKey(term) ? ((Map) tTable.get(term)).keySet()
-				: null;
-		Set cs = (Set) cTable.get(cat);
-		int tss = ts == null ? 0 : ts.size();
-		int css = cs == null ? 0 : cs.size();
-		int iss = 0; // intersection of ts and cs (couldn't be done with
-						// ts.retainAll(cs) since retainAll is destructive)
+		int t = getTermId(term);
+		int c = getCategoryId(cat);
+		int tss = t < 0 ? 0 : getTermCount(t);
+		int css = c < 0 ? 0 : getCategoryCount(c);
+		int iss = 0; // size of the intersection of ts and cs
 		if (tss > 0 && css > 0)
-			for (Iterator i = ts.iterator(); i.hasNext();)
-				if (cs.contains(i.next()))
-					iss++;
-		// pT = total count of Term T in Corpus / total number of terms in
-		// Corpus
-
-		double pT = (double) tss / (double) corpusSize;
+			iss = getJointCount(t, c);
+		return Probabilities.fromCounts(iss, tss, css, corpusSize);
+	}
 
-		// pC = total count of Docs in Category C / total number of documents in
-		// Corpus
-		double pC = (double) css / (double) corpusSize;
+	/**
+	 * Look up the document counts from which getProbabilities(term, cat)
+	 * estimates its probabilities, and store them into counts (a term or
+	 * category not in the model occurs in no documents). Unlike
+	 * getProbabilities(), this allocates nothing when counts is reused.
+	 * 
+	 * @return counts
+	 */
+	public Counts getCounts(String term, String cat, Counts counts) {
+		return getCounts(getTermId(term), getCategoryId(cat), counts);
+	}
 
-		// pTAndC = total count of term T in Category C / total number of terms
-		// in Corpus
-		double pTAndC = (double) iss / (double) corpusSize; //
+	/**
+	 * As getCounts(String, String, Counts), for a term and a category given
+	 * by id (or -1)
+	 */
+	public Counts getCounts(int t, int c, Counts counts) {
+		int tss = t < 0 ? 0 : getTermCount(t);
+		int css = c < 0 ? 0 : getCategoryCount(c);
+		int iss = 0; // size of the intersection of ts and cs
+		if (tss > 0 && css > 0)
+			iss = getJointCount(t, c);
+		return counts.set(iss, tss, css, corpusSize);
+	}
 
-		// pTAnd_C = total count of term T not in Category C / total number of
-		// terms in Corpus //P(t, ^c) = P(t) − P(t, c)
-		double pTAnd_C = (double) (tss - iss) / (double) corpusSize;
+	/**
+	 * @return the id of term (which indexes getTermCount(int) and
+	 *         getJointCount(int, int)), or -1 if term is not in the model
+	 */
+	public int getTermId(String term) {
+		return terms.getId(term);
+	}
 
-		// p_TAndC //P(^t, c) = (1 − P(t|c))P(c))
-		double p_TAndC = (double) (css - iss) / (double) corpusSize;
+	/**
+	 * @return the term with id t
+	 */
+	public String getTerm(int t) {
+		return terms.get(t);
+	}
 
-		// p_TAnd_C //P (^t, ^c) = (1 − P(t))P(^t, c)
+	/**
+	 * @return the id of category cat, or -1 if cat is not in the model
+	 */
+	public int getCategoryId(String cat) {
+		return categories.getId(cat);
+	}
 
-		double p_TAnd_C = (double) (corpusSize - (css + tss - iss))
-				/ (double) corpusSize;
+	/**
+	 * @return number of documents in which the term with id t occurs
+	 */
+	public int getTermCount(int t) {
+		return tTable[t].size();
+	}
 
-		// System.out.println(pT + ":" + pC + ":" + pTAndC + ":" + pTAnd_C + ":"
-		// + p_TAndC + ":" + p_TAnd_C);
+	/**
+	 * @return number of documents in the category with id c
+	 */
+	public int getCategoryCount(int c) {
+		return cTable[c].size();
+	}
 
-		return new Probabilities(pT, pC, pTAndC, pTAnd_C, p_TAndC, p_TAnd_C);
+	/**
+	 * @return number of documents in which term t occurs and which belong to
+	 *         category c (both given by id)
+	 */
+	public int getJointCount(int t, int c) {
+		return intersectionCount(t, c);
 	}
 
 	public int getTermSetSize() {
-		return tTable.size();
+		return terms.size();
 	}
 
 	/**
 	 * Delete all entries for terms not in the reduced term set
 	 */
 	public void trimTermSet(Set<String> rts) {
-		tTable.keySet().retainAll(rts);
+		StringIndex rterms = newTermIndex();
+		boolean[] keep = new boolean[terms.size()];
+		for (int t = 0; t < terms.size(); t++) {
+			String term = terms.get(t);
+			if (rts.contains(term)) {
+				keep[t] = true;
+				rterms.add(term);
+			}
+		}
+		retainPostings(keep, rterms.size());
+		if (tcMatrix != null)
+			tcMatrix = tcMatrix.retainRows(keep);
+		terms = rterms;
+	}
+
+	/**
+	 * @return an empty term index, for trimTermSet()
+	 */
+	StringIndex newTermIndex() {
+		return new StringIndex();
+	}
+
+	/**
+	 * Keep the postings of the terms for which keep is true (nkept of them),
+	 * renumbered in order
+	 */
+	void retainPostings(boolean[] keep, int nkept) {
+		Postings[] rtTable = new Postings[Math.max(1, nkept)];
+		int r = 0;
+		for (int t = 0; t < keep.length; t++)
+			if (keep[t]) {
+				tTable[t].trimToSize();
+				rtTable[r++] = tTable[t];
+			}
+		tTable = rtTable;
 	}
 
 	/**
 	 * Delete all entries for terms not in the reduced term set
 	 */
 	public void trimTermSet(WordFrequencyPair[] rts) {
-		tTable.keySet().retainAll(BagOfWords.extractTermCollection(rts));
+		trimTermSet(BagOfWords.extractTermCollection(rts));
+	}
+
+	/**
+	 * Add the documents of other (which is not modified) to this model, as
+	 * if they had been indexed into it after its own: terms, categories and
+	 * documents new to this model get the next ids, in the order of their ids
+	 * in other, and corpusSize grows by other's. Merging the models built
+	 * from consecutive parts of a corpus list, in order and in any grouping
+	 * (merge is associative), therefore gives the model built from the whole
+	 * list. Merging them in a different order gives a model with the same
+	 * terms, categories, documents and counts, differently numbered, so merge
+	 * is not order-independent: whatever depends on ids may differ. In
+	 * particular, term space reduction ranks terms with equal scores by term
+	 * id (see tc.tsr.TopKSelector), so a reduced term set may keep different
+	 * terms among those tied at its cut-off.
+	 * 
+	 * Neither model should have had its term set trimmed.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the models share a document id, or differ in
+	 *             isIgnoreCase() (nothing is merged in either case)
+	 */
+	public void merge(ProbabilityModel other) {
+		merge(other, false);
+	}
+
+	/**
+	 * As merge(ProbabilityModel), but if replace is true a document id found
+	 * in both models is reconciled as if the document had been indexed twice:
+	 * its term counts in other replace those in this model, and it gets the
+	 * categories it has in either. corpusSize grows by the number of
+	 * documents of other not already in this model.
+	 */
+	public void merge(ProbabilityModel other, boolean replace) {
+		if (other instanceof MappedProbabilityModel)
+			other = ((MappedProbabilityModel) other).toProbabilityModel();
+		if (other.isIgnoreCase() != isIgnoreCase())
+			throw new IllegalArgumentException(
+					"cannot merge models which differ in case sensitivity");
+		StringIndex odocs = other.getDocIndex();
+		int shared = 0;
+		for (int d = 0; d < odocs.size(); d++)
+			if (docSet.contains(odocs.get(d))) {
+				if (!replace)
+					throw new IllegalArgumentException("document "
+							+ odocs.get(d) + " is in both models");
+				shared++;
+			}
+		int[] docMap = new int[odocs.size()];
+		for (int d = 0; d < docMap.length; d++)
+			docMap[d] = addDocument(odocs.get(d));
+		for (int t = 0; t < other.getTermSetSize(); t++)
+			putPostings(other.getTerm(t), other.getPostings(t), docMap);
+		StringIndex ocats = other.getCategoryIndex();
+		for (int c = 0; c < ocats.size(); c++) {
+			String cat = ocats.get(c);
+			DocList dl = other.getDocList(c);
+			for (int i = 0; i < dl.size(); i++)
+				putIntoCTable(cat, docMap[dl.get(i)]);
+		}
+		corpusSize += other.corpusSize - shared;
 	}
 
 	public int getCategSetSize() {
-		return cTable.size();
+		return categories.size();
 	}
 
 	// Return the number of terms in id
 	public int getCount(String id, String term) {
-		Integer count = (Integer) tTable.get(term).get(id);
-		if (count == null)
+		Postings ps = getPostings(term);
+		int doc = docSet.getId(id);
+		if (ps == null || doc < 0)
 			return 0;
-		else
-			return count.intValue();
+		return ps.getDocCount(doc);
 	}
 
 	// return the vector of categories to which document id belongs
 	// (shouldn't this return a set instead?)
 	public Vector getCategVector(String id) {
 		Vector cv = new Vector();
-		for (Iterator e = cTable.entrySet().iterator(); e.hasNext();) {
-			Map.Entry kv = (Map.Entry) e.next();
-			if (((HashSet) kv.getValue()).contains(id))
-				cv.add(kv.getKey());
-		}
+		int doc = docSet.getId(id);
+		if (doc < 0)
+			return cv;
+		for (int i = 0; i < docCats[doc].length; i++)
+			cv.add(categories.get(docCats[doc][i]));
 		return cv;
 	}
 
 	// make a new wsp[] with scores initialised to zero
 	public WordScorePair[] getBlankWordScoreArray() {
-		WordScorePair[] wsp = new WordScorePair[tTable.size()];
-		int i = 0;
-		for (Iterator e = tTable.entrySet().iterator(); e.hasNext();) {
-			Map.Entry kv = (Map.Entry) e.next();
-			wsp[i++] = new WordScorePair((String) kv.getKey(), 0);
-		}
+		WordScorePair[] wsp = new WordScorePair[getTermSetSize()];
+		for (int t = 0; t < wsp.length; t++)
+			wsp[t] = new WordScorePair(getTerm(t), 0);
 		return wsp;
 	}
 
 	// gets an initialised wsp and populate it with global term frequency
 	public WordScorePair[] setFreqWordScoreArray(WordScorePair[] wsp) {
-		int i = 0;
-		for (Iterator e = tTable.entrySet().iterator(); e.hasNext();) {
-			Map.Entry kv = (Map.Entry) e.next();
-			wsp[i++] = new WordScorePair((String) kv.getKey(),
-					(double) ((HashMap) kv.getValue()).size());
-		}
+		for (int t = 0; t < getTermSetSize(); t++)
+			wsp[t] = new WordScorePair(getTerm(t), (double) getTermCount(t));
 		return wsp;
 	}
 
 	public WordScorePair[] getWordScoreArray() {
-		WordScorePair[] wsp = new WordScorePair[tTable.size()];
-		int i = 0;
-		for (Iterator e = tTable.entrySet().iterator(); e.hasNext();) {
-			Map.Entry kv = (Map.Entry) e.next();
-			wsp[i++] = new WordScorePair((String) kv.getKey(),
-					(double) ((HashMap) kv.getValue()).size());
-		}
-		return wsp;
+		return setFreqWordScoreArray(new WordScorePair[getTermSetSize()]);
 	}
 
 	/**
@@ -295,16 +674,24 @@ public class ProbabilityModel implements Serializable {
 	 * @return number of files a term occurs in
 	 */
 	public int getTermCount(String term) {
-		return tTable.get(term).size();
+		int t = getTermId(term);
+		return t < 0 ? 0 : getTermCount(t);
 	}
 
 	public boolean occursInCategory(String term, String cat) {
-		Set<String> ds = tTable.get(term).keySet();
-		Set<String> cs = cTable.get(cat);
-		for (Iterator i = ds.iterator(); i.hasNext();)
-			if (cs.contains(i.next()))
-				return true;
-		return false;
+		int t = getTermId(term);
+		int c = getCategoryId(cat);
+		return t >= 0 && c >= 0 && getJointCount(t, c) > 0;
+	}
+
+	/**
+	 * @return total number of postings, i.e. of (term, document) pairs
+	 */
+	public long getPostingCount() {
+		long n = 0;
+		for (int t = 0; t < getTermSetSize(); t++)
+			n += getTermCount(t);
+		return n;
 	}
 
 	/**
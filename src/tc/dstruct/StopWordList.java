@@ -1,27 +1,50 @@
 package tc.dstruct;
 import java.io.*;
-import java.util.Vector;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 /**
  *  List of stop words to be removed
  *
+ *  Words are stored in lower case in an open-addressing hash table,
+ *  which is fixed once the list has been read. Besides contains(),
+ *  which folds case first, words which are already in lower case can
+ *  be looked up with containsFolded(), and words held in a char
+ *  buffer (e.g. SpanTokenizer.termBuffer()) with contains(char[],
+ *  int, int), without making a String of them.
+ *
  * @author  S. Luz &#60;luzs@acm.org&#62;
  * @version <font size=-1>$Id: StopWordList.java,v 1.4 2004/03/19 15:48:08 luzs Exp $</font>
  * @see  
 */
-public class StopWordList extends  Vector
+public class StopWordList extends AbstractSet<String>
 {
 
-  public StopWordList (String flist) 
+  private String[] words = new String[0];
+  /**
+   * hash table of words (null for an empty slot); its length is a
+   * power of 2, and at least twice the number of words
+   */
+  private String[] table = new String[1];
+  private int[] hashes = new int[1];
+
+  public StopWordList (String flist)
   {
     super();
     try {
       BufferedReader in
         = new BufferedReader(new FileReader(flist));
       String word = null;
+      String[] ws = new String[64];
+      int n = 0;
       while ( (word = in.readLine()) != null )
         {
-          this.add(word.toLowerCase());
+          if (n == ws.length)
+            ws = Arrays.copyOf(ws, 2 * n);
+          ws[n++] = word.toLowerCase();
         }
+      in.close();
+      build(ws, n);
     }
     catch (IOException e){
       System.err.println("Error reading stopword list "+flist);
@@ -29,7 +52,88 @@ public class StopWordList extends  Vector
     }
   }
 
+  private void build (String[] ws, int n)
+  {
+    int length = 1;
+    while (length < 2 * n)
+      length <<= 1;
+    table = new String[length];
+    hashes = new int[length];
+    int size = 0;
+    for (int i = 0; i < n; i++) {
+      int h = ws[i].hashCode();
+      int slot = slot(h);
+      while (table[slot] != null && !table[slot].equals(ws[i]))
+        slot = (slot + 1) & (length - 1);
+      if (table[slot] == null) {
+        table[slot] = ws[i];
+        hashes[slot] = h;
+        ws[size++] = ws[i];
+      }
+    }
+    words = Arrays.copyOf(ws, size);
+  }
+
+  private int slot (int h)
+  {
+    return (h ^ (h >>> 16)) & (table.length - 1);
+  }
+
   public boolean contains (String tw ){
-    return super.contains(tw.toLowerCase());
-  } 
+    return containsFolded(tw.toLowerCase());
+  }
+
+  public boolean contains (Object o)
+  {
+    return o instanceof String && contains((String) o);
+  }
+
+  /**
+   * @return true if w, which must be in lower case already, is a stop
+   * word
+   */
+  public boolean containsFolded (String w)
+  {
+    int h = w.hashCode();
+    for (int slot = slot(h); table[slot] != null; slot = (slot + 1) & (table.length - 1))
+      if (hashes[slot] == h && table[slot].equals(w))
+        return true;
+    return false;
+  }
+
+  /**
+   * @return true if the (lower case) word held in buf from off to
+   * off+len is a stop word
+   */
+  public boolean contains (char[] buf, int off, int len)
+  {
+    // same as String.hashCode()
+    int h = 0;
+    for (int i = off; i < off + len; i++)
+      h = 31 * h + buf[i];
+    for (int slot = slot(h); table[slot] != null; slot = (slot + 1) & (table.length - 1))
+      if (hashes[slot] == h && matches(table[slot], buf, off, len))
+        return true;
+    return false;
+  }
+
+  private static boolean matches (String w, char[] buf, int off, int len)
+  {
+    if (w.length() != len)
+      return false;
+    for (int i = 0; i < len; i++)
+      if (w.charAt(i) != buf[off + i])
+        return false;
+    return true;
+  }
+
+  public Iterator<String> iterator ()
+  {
+    return Arrays.asList(words).iterator();
+  }
+
+  public int size ()
+  {
+    return words.length;
+  }
 }
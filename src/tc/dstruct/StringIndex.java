@@ -0,0 +1,73 @@
+package tc.dstruct;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Map Strings to consecutive int ids (0, 1, 2, ...) in the order in which
+ * they are first added, and back.
+ * 
+ * @version <font size=-1>$Id: $</font>
+ * @see
+ */
+public class StringIndex implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private Map<String, Integer> ids = new HashMap<String, Integer>();
+	private List<String> strings = new ArrayList<String>();
+
+	public StringIndex() {
+	}
+
+	/**
+	 * Return the id of s, adding s to the index if it isn't there yet.
+	 */
+	public int add(String s) {
+		Integer id = ids.get(s);
+		if (id != null)
+			return id.intValue();
+		int nid = strings.size();
+		ids.put(s, Integer.valueOf(nid));
+		strings.add(s);
+		return nid;
+	}
+
+	/**
+	 * @return the id of s, or -1 if s is not in the index
+	 */
+	public int getId(String s) {
+		Integer id = ids.get(s);
+		return id == null ? -1 : id.intValue();
+	}
+
+	public boolean contains(String s) {
+		return ids.containsKey(s);
+	}
+
+	public String get(int id) {
+		return strings.get(id);
+	}
+
+	public int size() {
+		return strings.size();
+	}
+
+	/**
+	 * @return the indexed Strings, in id order (not to be modified)
+	 */
+	public List<String> getStrings() {
+		return strings;
+	}
+
+	/**
+	 * @return the indexed Strings, as an (unmodifiable) Set
+	 */
+	public Set<String> keySet() {
+		return Collections.unmodifiableSet(ids.keySet());
+	}
+}
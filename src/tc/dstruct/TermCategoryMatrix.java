@@ -0,0 +1,188 @@
+package tc.dstruct;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Sparse matrix of the number of documents in which each term occurs and
+ * which belong to each category (the joint document counts from which
+ * ProbabilityModel estimates P(t, c)).
+ *
+ * Rows (terms) are stored one after another (in compressed sparse row form):
+ * row t holds, in increasing order, the ids of the categories with which term
+ * t co-occurs in at least one document, and the number of such documents.
+ * Categories with which t never co-occurs are left out, so a count is found
+ * by binary search in a row that is usually only a few entries long.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see ProbabilityModel
+ */
+public class TermCategoryMatrix implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	/**
+	 * row t occupies positions rowStart[t] to rowStart[t+1]-1 of cats and
+	 * counts
+	 */
+	private int[] rowStart;
+	private int[] cats;
+	private int[] counts;
+
+	private TermCategoryMatrix(int[] rowStart, int[] cats, int[] counts) {
+		this.rowStart = rowStart;
+		this.cats = cats;
+		this.counts = counts;
+	}
+
+	/**
+	 * Build the matrix in one pass over the postings of nterms terms, given
+	 * the (ids of the) categories of each document, docCats, and the number
+	 * of categories ncats.
+	 */
+	public TermCategoryMatrix(Postings[] tTable, int nterms, int[][] docCats,
+			int ncats) {
+		Builder b = new Builder(nterms, ncats);
+		for (int t = 0; t < nterms; t++)
+			b.addRow(tTable[t].docs, tTable[t].size, docCats);
+		b.finish();
+	}
+
+	/**
+	 * As TermCategoryMatrix(Postings[], int, int[][], int), for postings
+	 * kept outside the heap
+	 */
+	public TermCategoryMatrix(OffHeapPostingsTable table, int[][] docCats,
+			int ncats) {
+		Builder b = new Builder(table.getTermCount(), ncats);
+		int[] docs = new int[16];
+		for (int t = 0; t < table.getTermCount(); t++) {
+			docs = table.getDocs(t, docs);
+			b.addRow(docs, table.size(t), docCats);
+		}
+		b.finish();
+	}
+
+	/**
+	 * Fill in the matrix one row at a time
+	 */
+	private class Builder {
+		// each term's co-occurrences are counted in a dense row, then the
+		// non-zero entries are copied out
+		private int[] row;
+		private int[] touched;
+		private int nnz = 0;
+		private int nrows = 0;
+
+		Builder(int nterms, int ncats) {
+			row = new int[ncats];
+			touched = new int[ncats];
+			rowStart = new int[nterms + 1];
+			cats = new int[Math.max(16, nterms)];
+			counts = new int[cats.length];
+		}
+
+		/**
+		 * Add the row of the next term, which occurs in docs[0] to
+		 * docs[ndocs-1]
+		 */
+		void addRow(int[] docs, int ndocs, int[][] docCats) {
+			int ntouched = 0;
+			for (int i = 0; i < ndocs; i++) {
+				int[] dc = docCats[docs[i]];
+				for (int j = 0; j < dc.length; j++) {
+					int c = dc[j];
+					if (row[c]++ == 0)
+						touched[ntouched++] = c;
+				}
+			}
+			Arrays.sort(touched, 0, ntouched);
+			if (nnz + ntouched > cats.length) {
+				int length = Math.max(2 * cats.length, nnz + ntouched);
+				cats = Arrays.copyOf(cats, length);
+				counts = Arrays.copyOf(counts, length);
+			}
+			for (int k = 0; k < ntouched; k++) {
+				int c = touched[k];
+				cats[nnz] = c;
+				counts[nnz++] = row[c];
+				row[c] = 0;
+			}
+			rowStart[++nrows] = nnz;
+		}
+
+		void finish() {
+			cats = Arrays.copyOf(cats, nnz);
+			counts = Arrays.copyOf(counts, nnz);
+		}
+	}
+
+	/**
+	 * @return number of documents in which term t occurs and which belong to
+	 *         category c
+	 */
+	public int getCount(int t, int c) {
+		int p = Arrays.binarySearch(cats, rowStart[t], rowStart[t + 1], c);
+		return p < 0 ? 0 : counts[p];
+	}
+
+	/**
+	 * @return number of categories with which term t co-occurs
+	 */
+	public int getRowSize(int t) {
+		return rowStart[t + 1] - rowStart[t];
+	}
+
+	/**
+	 * @return id of the i-th category with which term t co-occurs
+	 */
+	public int getRowCategory(int t, int i) {
+		return cats[rowStart[t] + i];
+	}
+
+	/**
+	 * @return number of documents of the i-th category with which term t
+	 *         co-occurs that contain t
+	 */
+	public int getRowCount(int t, int i) {
+		return counts[rowStart[t] + i];
+	}
+
+	public int getTermCount() {
+		return rowStart.length - 1;
+	}
+
+	/**
+	 * @return number of non-zero entries
+	 */
+	public int size() {
+		return cats.length;
+	}
+
+	/**
+	 * Return a matrix holding only the rows of the terms for which keep is
+	 * true, in the same order (i.e. with the terms renumbered as
+	 * ProbabilityModel.trimTermSet renumbers them)
+	 */
+	public TermCategoryMatrix retainRows(boolean[] keep) {
+		int nrows = 0;
+		int nnz = 0;
+		for (int t = 0; t < keep.length; t++)
+			if (keep[t]) {
+				nrows++;
+				nnz += getRowSize(t);
+			}
+		int[] rs = new int[nrows + 1];
+		int[] cs = new int[nnz];
+		int[] ns = new int[nnz];
+		int r = 0;
+		for (int t = 0; t < keep.length; t++)
+			if (keep[t]) {
+				int n = getRowSize(t);
+				System.arraycopy(cats, rowStart[t], cs, rs[r], n);
+				System.arraycopy(counts, rowStart[t], ns, rs[r], n);
+				rs[r + 1] = rs[r] + n;
+				r++;
+			}
+		return new TermCategoryMatrix(rs, cs, ns);
+	}
+}
@@ -0,0 +1,55 @@
+package tc.dstruct;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import tc.parser.Tokenizer;
+
+/**
+ * Index of tokens (as they occur in the text, i.e. before case folding and
+ * removal of dots) which also stores the normalised term for each token, so
+ * that a token need only be normalised once however often it occurs.
+ * 
+ * @version <font size=-1>$Id: $</font>
+ * @see TokenSequence
+ */
+public class TokenDictionary extends StringIndex {
+
+	private static final long serialVersionUID = 1L;
+	private List<String> terms = new ArrayList<String>();
+	private BitSet dotted = new BitSet();
+
+	public TokenDictionary() {
+		super();
+	}
+
+	/**
+	 * Return the id of token, adding it (and its term) to the dictionary if
+	 * it isn't there yet.
+	 */
+	public int add(String token) {
+		int id = super.add(token);
+		if (id == terms.size()) {
+			terms.add(Tokenizer.fixType(token.toLowerCase()));
+			if (token.indexOf('.') >= 0)
+				dotted.set(id);
+		}
+		return id;
+	}
+
+	/**
+	 * @return true if token id contains dots (if it doesn't, its term is
+	 *         simply the token in lower case)
+	 */
+	public boolean hasDots(int id) {
+		return dotted.get(id);
+	}
+
+	/**
+	 * @return the term for token id: the token in lower case, without dots
+	 */
+	public String getTerm(int id) {
+		return terms.get(id);
+	}
+}
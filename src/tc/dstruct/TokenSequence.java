@@ -0,0 +1,67 @@
+package tc.dstruct;
+
+/**
+ * The tokens of a text, in the order in which they occur, stored as ids in a
+ * (shared) TokenDictionary.
+ * 
+ * @version <font size=-1>$Id: $</font>
+ * @see TokenDictionary
+ * @see ParsedNewsItem
+ */
+public class TokenSequence {
+
+	private TokenDictionary dict = null;
+	private int[] ids = null;
+
+	public TokenSequence(TokenDictionary dict, int[] ids) {
+		this.dict = dict;
+		this.ids = ids;
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	public int getTokenId(int i) {
+		return ids[i];
+	}
+
+	/**
+	 * @return the i-th token, as it occurs in the text
+	 */
+	public String getToken(int i) {
+		return dict.get(ids[i]);
+	}
+
+	/**
+	 * @return the i-th token in lower case, without dots
+	 */
+	public String getTerm(int i) {
+		return dict.getTerm(ids[i]);
+	}
+
+	/**
+	 * @return true if the i-th token contains dots
+	 */
+	public boolean hasDots(int i) {
+		return dict.hasDots(ids[i]);
+	}
+
+	public TokenDictionary getDictionary() {
+		return dict;
+	}
+
+	/**
+	 * @return the tokens separated by spaces (which tokenises back into this
+	 *         sequence)
+	 */
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		for (int i = 0; i < ids.length; i++) {
+			if (i > 0)
+				sb.append(' ');
+			sb.append(getToken(i));
+		}
+		return sb.toString();
+	}
+}
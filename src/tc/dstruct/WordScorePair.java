@@ -61,7 +61,7 @@ public class WordScorePair implements Comparable
   }
   public int compareTo (WordScorePair wfp)
   {
-    return (new Double(score)).compareTo(wfp.getDoubleScore());
+    return Double.compare(score, wfp.score);
   }
 
 }
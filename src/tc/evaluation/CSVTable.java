@@ -3,7 +3,7 @@ package tc.evaluation;
 import tc.dstruct.*;
 
 import java.util.Map;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -12,11 +12,17 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Vector;
 import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class CSVTable extends HashMap implements CSVManipulation {
+/**
+ * The CSVs (and true categories) of a set of documents, by document id, for a
+ * single category. Both are kept in concurrent maps, so that CSVs may be
+ * stored by several threads at once (see BVBayes.classifyCorpus()).
+ */
+public class CSVTable extends ConcurrentHashMap implements CSVManipulation {
 
 	private String category = null;
-	private Map<String, Vector> id_cat_map = new HashMap<String, Vector>();
+	private Map<String, Vector> id_cat_map = new ConcurrentHashMap<String, Vector>();
 
 	public CSVTable(String category) {
 		super();
@@ -50,14 +56,44 @@ public class CSVTable extends HashMap implements CSVManipulation {
 		}
 	}
 
+	/**
+	 * Apply the UCut threshold which selects the proportion of documents
+	 * closest to generality (the category's generality in the training set).
+	 * Documents with equal CSVs are all selected or all rejected, so the
+	 * threshold is chosen among the distinct CSVs (or above them all, when
+	 * selecting no document comes closest).
+	 */
 	@Override
 	public void applyProportionalThreshold(double generality) {
-		System.out.println(id_cat_map.size());
+		double[] csvs = new double[size()];
+		int n = 0;
+		for (Object csv : values())
+			csvs[n++] = (Double) csv;
+		Arrays.sort(csvs, 0, n);
+		double target = generality * n;
+		double threshold = Double.POSITIVE_INFINITY;
+		double best = target;
+		// csvs[i] as a threshold selects the documents from i to n-1
+		for (int i = n - 1; i >= 0; i--) {
+			if (i > 0 && csvs[i - 1] == csvs[i])
+				continue;
+			double d = Math.abs(n - i - target);
+			if (d < best) {
+				best = d;
+				threshold = csvs[i];
+			}
+		}
+		applyUCutThreshold(threshold);
 	}
 
-	@Override
-	public double getPrecision() {
-		Integer TP = 0, FP = 0, TN = 0, FN = 0;
+	/**
+	 * Count the true positives, false positives, false negatives and true
+	 * negatives (once a threshold has been applied)
+	 * 
+	 * @return {TP, FP, FN, TN}
+	 */
+	public int[] getContingencyTable() {
+		int TP = 0, FP = 0, TN = 0, FN = 0;
 		for (Iterator e = this.entrySet().iterator(); e.hasNext();) {
 			Map.Entry kv = (Map.Entry) e.next();
 			if (((Double) kv.getValue() == 1.0) && id_cat_map.get(kv.getKey()).contains(category))
@@ -69,43 +105,32 @@ public class CSVTable extends HashMap implements CSVManipulation {
 			else
 				TN += 1;
 		}
-		System.out.println(TP + ":" + FP);
-		return (double)TP / (double) (TP + FP);
+		return new int[] { TP, FP, FN, TN };
+	}
+
+	@Override
+	public double getPrecision() {
+		int[] ct = getContingencyTable();
+		System.out.println(ct[0] + ":" + ct[1]);
+		return (double) ct[0] / (double) (ct[0] + ct[1]);
 	}
 
 	@Override
 	public double getRecall() {
-		Integer TP = 0, FP = 0, TN = 0, FN = 0;
-		for (Iterator e = this.entrySet().iterator(); e.hasNext();) {
-			Map.Entry kv = (Map.Entry) e.next();
-			if (((Double) kv.getValue() == 1.0) && id_cat_map.get(kv.getKey()).contains(category))
-				TP += 1;
-			else if (((Double) kv.getValue() == 1.0) && !id_cat_map.get(kv.getKey()).contains(category))
-				FP += 1;
-			else if (((Double) kv.getValue() == 0.0) && id_cat_map.get(kv.getKey()).contains(category))
-				FN += 1;
-			else
-				TN += 1;
-		}
-		return (double) TP / (double) (TP + FN);
+		int[] ct = getContingencyTable();
+		return (double) ct[0] / (double) (ct[0] + ct[2]);
 	}
 
 	@Override
 	public double getAccuracy() {
-		Integer TP = 0, FP = 0, TN = 0, FN = 0;
-		for (Iterator e = this.entrySet().iterator(); e.hasNext();) {
-			Map.Entry kv = (Map.Entry) e.next();
-			if (((Double) kv.getValue() == 1.0) && id_cat_map.get(kv.getKey()).contains(category))
-				TP += 1;
-			else if (((Double) kv.getValue() == 1.0) && !id_cat_map.get(kv.getKey()).contains(category))
-				FP += 1;
-			else if (((Double) kv.getValue() == 0.0) && id_cat_map.get(kv.getKey()).contains(category))
-				FN += 1;
-			else
-				TN += 1;
-		}
-		return (double) (TP + 	TN) /  (double) (TP+FP+TN+FN);
+		int[] ct = getContingencyTable();
+		return (double) (ct[0] + ct[3]) / (double) (ct[0] + ct[1] + ct[2] + ct[3]);
+	}
+
+	public String getCategory() {
+		return category;
 	}
+
 	/**
 	 * ******************** Lab 04: Exercise ********************* Implement the
 	 * methods specified by the CSVManipulation interface
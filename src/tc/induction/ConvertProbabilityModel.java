@@ -0,0 +1,54 @@
+package tc.induction;
+
+import tc.dstruct.MappedProbabilityModel;
+import tc.dstruct.ProbabilityModel;
+import tc.util.IOUtil;
+
+/**
+ * Convert a probability model between the serialized format written by
+ * MakeProbabilityModel (see IOUtil.dumpProbabilityModel()) and the
+ * memory-mapped format read by MappedProbabilityModel, in either direction.
+ *
+ * Usage:
+ *
+ * <pre>
+ *  ConvertProbabilityModel infile outfile
+ * </pre>
+ *
+ * A serialized model in infile is saved to outfile in the mapped format, and
+ * a mapped one in the serialized format. The time taken to load infile and to
+ * write outfile is reported on stderr.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see MappedProbabilityModel
+ * @see IOUtil
+ */
+public class ConvertProbabilityModel {
+
+	public static void main(String[] args) {
+		try {
+			String infile = args[0];
+			String outfile = args[1];
+			boolean toMapped = !MappedProbabilityModel.isMappedModel(infile);
+			long start = System.nanoTime();
+			ProbabilityModel pm = IOUtil.loadProbabilityModel(infile);
+			if (pm == null)
+				throw new IllegalArgumentException("cannot load " + infile);
+			System.err.println("Loaded " + infile + " ("
+					+ pm.getTermSetSize() + " terms, " + pm.getCategSetSize()
+					+ " categories) in " + (System.nanoTime() - start)
+					/ 1000000 + " ms");
+			start = System.nanoTime();
+			if (toMapped)
+				IOUtil.dumpMappedProbabilityModel(pm, outfile);
+			else
+				IOUtil.dumpProbabilityModel(pm, outfile);
+			System.err.println("Wrote " + (toMapped ? "mapped" : "serialized")
+					+ " model " + outfile + " in "
+					+ (System.nanoTime() - start) / 1000000 + " ms");
+		} catch (Exception e) {
+			System.err.println("Usage: ConvertProbabilityModel INFILE OUTFILE");
+			e.printStackTrace();
+		}
+	}
+}
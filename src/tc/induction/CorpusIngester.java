@@ -0,0 +1,174 @@
+package tc.induction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tc.dstruct.BagOfWords;
+import tc.dstruct.CorpusList;
+import tc.dstruct.ParsedNewsItem;
+import tc.dstruct.ProbabilityModel;
+import tc.dstruct.StopWordList;
+import tc.parser.CorpusCache;
+import tc.parser.NewsItemListener;
+import tc.util.PrintUtil;
+
+/**
+ * Parse and tokenise the files in a corpus list on a pool of worker threads,
+ * and index the results into a ProbabilityModel.
+ *
+ * Files are parsed and tokenised concurrently, but the tokenised news items
+ * are added to the model by the calling thread only, one file at a time and
+ * in corpus list order. The resulting model is therefore identical to the one
+ * built sequentially by ProbabilityModel.getIndexer(). At most 2 x workers
+ * tokenised files are held in memory while waiting to be indexed.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see ProbabilityModel
+ * @see MakeProbabilityModel
+ */
+public class CorpusIngester {
+
+	private StopWordList swlist = null;
+	private int workers = 1;
+	/**
+	 * worker name -> {files, documents, busy nanoseconds}
+	 */
+	private Map<String, long[]> workerStats = new TreeMap<String, long[]>();
+
+	public CorpusIngester(StopWordList swlist, int workers) {
+		this.swlist = swlist;
+		this.workers = workers < 1 ? 1 : workers;
+	}
+
+	/**
+	 * Parse, tokenise and index every file in clist into pm, then print
+	 * throughput figures for each worker on stderr.
+	 */
+	public void ingest(CorpusList clist, ProbabilityModel pm)
+			throws InterruptedException, ExecutionException {
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		LinkedList<Future<TokenizedFile>> pending = new LinkedList<Future<TokenizedFile>>();
+		Iterator<?> files = clist.iterator();
+		int ndocs = 0;
+		long start = System.nanoTime();
+		try {
+			while (files.hasNext() && pending.size() < 2 * workers)
+				pending.add(pool.submit(new TokenizeTask((String) files.next())));
+			while (!pending.isEmpty()) {
+				TokenizedFile tf = pending.removeFirst().get();
+				if (files.hasNext())
+					pending.add(pool.submit(new TokenizeTask((String) files
+							.next())));
+				System.err.print("\n----- Indexing: " + tf.filename
+						+ " ------\n");
+				ndocs += tf.index(pm);
+				addWorkerStats(tf);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		printReport(ndocs, System.nanoTime() - start);
+	}
+
+	private void addWorkerStats(TokenizedFile tf) {
+		long[] ws = workerStats.get(tf.worker);
+		if (ws == null) {
+			ws = new long[3];
+			workerStats.put(tf.worker, ws);
+		}
+		ws[0]++;
+		ws[1] += tf.size();
+		ws[2] += tf.nanos;
+	}
+
+	private void printReport(int ndocs, long nanos) {
+		System.err.println("Ingested " + ndocs + " documents using " + workers
+				+ " worker(s) in " + nanos / 1000000 + " ms ("
+				+ docsPerSecond(ndocs, nanos) + " docs/s overall)");
+		for (Map.Entry<String, long[]> kv : workerStats.entrySet()) {
+			long[] ws = kv.getValue();
+			System.err.println("  " + kv.getKey() + ": " + ws[0] + " file(s), "
+					+ ws[1] + " docs, " + ws[2] / 1000000 + " ms busy, "
+					+ docsPerSecond(ws[1], ws[2]) + " docs/s");
+		}
+	}
+
+	private static long docsPerSecond(long ndocs, long nanos) {
+		return nanos == 0 ? 0 : ndocs * 1000000000L / nanos;
+	}
+
+	/**
+	 * Parse and tokenise a single file (run by a worker thread)
+	 */
+	private class TokenizeTask implements Callable<TokenizedFile> {
+		private String filename;
+
+		TokenizeTask(String filename) {
+			this.filename = filename;
+		}
+
+		public TokenizedFile call() {
+			long start = System.nanoTime();
+			final TokenizedFile tf = new TokenizedFile(filename);
+			CorpusCache.parse(filename, new NewsItemListener() {
+				public void newsItem(ParsedNewsItem pni) {
+					tf.add(pni.getId(), new BagOfWords(pni, swlist), pni
+							.getCategVector());
+				}
+			});
+			tf.worker = Thread.currentThread().getName();
+			tf.nanos = System.nanoTime() - start;
+			return tf;
+		}
+	}
+
+	/**
+	 * The tokenised news items of a single file, in document order
+	 */
+	private static class TokenizedFile {
+		String filename;
+		String worker = null;
+		long nanos = 0;
+		private List<String> ids = new ArrayList<String>();
+		private List<BagOfWords> terms = new ArrayList<BagOfWords>();
+		private List<Collection<?>> categs = new ArrayList<Collection<?>>();
+
+		TokenizedFile(String filename) {
+			this.filename = filename;
+		}
+
+		void add(String id, BagOfWords bag, Collection<?> cv) {
+			ids.add(id);
+			terms.add(bag);
+			categs.add(cv);
+		}
+
+		int size() {
+			return ids.size();
+		}
+
+		/**
+		 * Add every news item to pm, exactly as pm.getIndexer() would
+		 */
+		int index(ProbabilityModel pm) {
+			for (int i = 0; i < ids.size(); i++) {
+				pm.corpusSize++;
+				PrintUtil.printNoMove("Generating prob models ...",
+						pm.corpusSize);
+				pm.addNewsItemTerms(ids.get(i), terms.get(i), categs.get(i));
+			}
+			PrintUtil.donePrinting();
+			return ids.size();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package tc.induction;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import tc.dstruct.Counts;
+import tc.dstruct.Probabilities;
+import tc.dstruct.ProbabilityModel;
+import tc.dstruct.WordScorePair;
+import tc.util.IOUtil;
+
+/**
+ * Compare the cost of querying a ProbabilityModel for every (term, category)
+ * pair through getProbabilities(), which allocates a Probabilities object per
+ * query, and through getCounts(), which fills in a reused Counts object, by
+ * term and category name or by id.
+ *
+ * Usage:
+ *
+ * <pre>
+ *  CountsBenchmark pmfile [rounds]
+ * </pre>
+ *
+ * Each way of querying is run 'rounds' times (default 5) after a warm-up
+ * round; the best round is reported in queries per second, along with the
+ * number of bytes allocated per query (as measured by the JVM's per-thread
+ * allocation counter, where available).
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see ProbabilityModel
+ * @see Counts
+ */
+public class CountsBenchmark {
+
+	private static final String[] NAMES = { "getProbabilities(term, cat)",
+			"getCounts(term, cat, counts)", "getCounts(t, c, counts)" };
+
+	/**
+	 * Query pm for every pair of terms and cats (whose ids are their indices)
+	 * in the way given by mode (an index into NAMES), and return the sum of
+	 * the P(t, c)s, so that the queries cannot be optimised away
+	 */
+	private static double round(ProbabilityModel pm, String[] terms,
+			String[] cats, int mode) {
+		double sum = 0;
+		Counts counts = new Counts();
+		for (int i = 0; i < terms.length; i++)
+			for (int k = 0; k < cats.length; k++)
+				if (mode == 0) {
+					Probabilities p = pm.getProbabilities(terms[i], cats[k]);
+					sum += p.tc;
+				} else if (mode == 1) {
+					pm.getCounts(terms[i], cats[k], counts);
+					sum += (double) counts.tc / counts.n;
+				} else {
+					pm.getCounts(i, k, counts);
+					sum += (double) counts.tc / counts.n;
+				}
+		return sum;
+	}
+
+	/**
+	 * @return bytes allocated so far by the current thread, or -1 if the
+	 *         JVM doesn't count them
+	 */
+	private static long allocatedBytes(ThreadMXBean tmx) {
+		if (tmx instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) tmx)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1;
+	}
+
+	public static void main(String[] args) {
+		try {
+			ProbabilityModel pm = IOUtil.loadProbabilityModel(args[0]);
+			int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+			WordScorePair[] wsp = pm.getBlankWordScoreArray();
+			// in id order, so that mode 2 queries the same pairs
+			String[] terms = new String[wsp.length];
+			for (int i = 0; i < wsp.length; i++)
+				terms[i] = wsp[i].getWord();
+			String[] cats = new String[pm.getCategSetSize()];
+			for (String cat : pm.getCategorySet())
+				cats[pm.getCategoryId(cat)] = cat;
+			long queries = (long) terms.length * cats.length;
+			System.out.println(terms.length + " terms x " + cats.length
+					+ " categories = " + queries + " queries per round");
+			ThreadMXBean tmx = ManagementFactory.getThreadMXBean();
+			double check = 0;
+			for (int mode = 0; mode < NAMES.length; mode++) {
+				long best = Long.MAX_VALUE;
+				long bytes = 0;
+				double sum = 0;
+				for (int r = 0; r <= rounds; r++) {
+					long a = allocatedBytes(tmx);
+					long start = System.nanoTime();
+					sum = round(pm, terms, cats, mode);
+					long t = System.nanoTime() - start;
+					// round 0 is a warm-up
+					if (r > 0 && t < best) {
+						best = t;
+						bytes = a < 0 ? -1 : allocatedBytes(tmx) - a;
+					}
+				}
+				if (mode == 0)
+					check = sum;
+				System.out.println(NAMES[mode] + ": "
+						+ (long) (queries / (best / 1e9)) + " queries/s, "
+						+ (bytes < 0 ? "n/a" : ""
+								+ Math.round(100.0 * bytes / queries) / 100.0)
+						+ " bytes/query"
+						+ (sum != check ? " (RESULTS DIFFER)" : ""));
+			}
+		} catch (Exception e) {
+			System.err.println("Usage: CountsBenchmark PMFILE [ROUNDS]");
+			e.printStackTrace();
+		}
+	}
+}
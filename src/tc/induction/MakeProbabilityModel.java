@@ -24,7 +24,7 @@ import java.util.Arrays;
  * Usage:
  * 
  * <pre>
- *  MakeProbabilityModel corpus_list stopwdlist aggr tf_method categ pmfile
+ *  MakeProbabilityModel corpus_list stopwdlist aggr tf_method categ pmfile [workers]
  * 
  * SYNOPSIS:
  *   Tokenise each file in corpus_list, remove words in stopwdlist
@@ -34,7 +34,11 @@ import java.util.Arrays;
  *  tf_method: term filtering method. One of: 
  *          'df': document frequency, local,
  *          'dfg': document frequency, global,
- *          'ig': information gain.
+ *          'ig': information gain,
+ *          'gss': GSS coefficient,
+ *          'or': odds ratio,
+ *          'chi': chi-square,
+ *          'mi': mutual information.
  * 
  *  categ: target category (e.g. 'acq'.) for local term filtering OR
  *          a method for combining local scores. One of:
@@ -44,6 +48,15 @@ import java.util.Arrays;
  *             '_WAVG' (sum of local scores wbeighted by category generality.)
  * 
  *  pmfile: name of output file for probability model.
+ * 
+ *  workers: number of threads used to parse and tokenise corpus_list
+ *          and to compute term scores (default 1). The resulting model is
+ *          the same for any value.
+ * 
+ *  With -Dtc.model.storage=offheap the model is built as an
+ *  OffHeapProbabilityModel (see ProbabilityModel.newInstance()). The
+ *  model written is the same either way. Collector activity during the
+ *  run is reported on stderr.
  * </pre>
  * 
  * @author Saturnino Luz &#60;luzs@acm.org&#62;
@@ -59,6 +72,7 @@ public class MakeProbabilityModel {
 	private static CorpusList clist = null;
 	private static StopWordList swlist = null;
 	private static int aggressiveness = 0;
+	private static int workers = 1;
 
 	/**
 	 * Set up the main user interface items
@@ -80,7 +94,18 @@ public class MakeProbabilityModel {
 		return np.getParsedText();
 	}
 
+	/**
+	 * indexNews: parse filename (or read its tokens from the corpus cache) and
+	 * add each news item to pm as soon as it is read, so that only one news
+	 * item is held in memory at a time
+	 */
+	public void indexNews(String filename, ProbabilityModel pm) {
+		CorpusCache.parse(filename, pm.getIndexer(swlist));
+		PrintUtil.donePrinting();
+	}
+
 	private void computeScores(TermFilter tf, String methodOrCat) {
+		tf.setParallelism(workers);
 		if (methodOrCat.equals("_MAX"))
 			tf.computeGlobalScoresMAX();
 		else if (methodOrCat.equals("_WAVG"))
@@ -115,6 +140,18 @@ public class MakeProbabilityModel {
 			computeScores(tf, categ);
 			rts = tf.getReducedTermSet(aggressiveness);
 			tf = null;
+		} else if (method.equals("chi")) {
+			System.err.println("Filtering term set by chi-square");
+			ChiSquare tf = new ChiSquare(pm);
+			computeScores(tf, categ);
+			rts = tf.getReducedTermSet(aggressiveness);
+			tf = null;
+		} else if (method.equals("mi")) {
+			System.err.println("Filtering term set by mutual information");
+			MutualInformation tf = new MutualInformation(pm);
+			computeScores(tf, categ);
+			rts = tf.getReducedTermSet(aggressiveness);
+			tf = null;
 		} else if (method.equals("dfg")) {
 			System.err
 					.println("Filtering term set by document frequency (global)");
@@ -143,12 +180,18 @@ public class MakeProbabilityModel {
 					+ ":TermFilter" + termFilter + ":Category" + category
 					+ ":pmfile" + pmfile);
 			// System.exit(0);
-			ProbabilityModel pm = new ProbabilityModel();
-			for (Enumeration e = f.clist.elements(); e.hasMoreElements();) {
-				String fname = (String) e.nextElement();
-				System.err.print("\n----- Processing: " + fname + " ------\n");
-				pm.addParsedText(f.parseNews(fname), swlist);
-			}
+			workers = args.length > 6 ? Integer.parseInt(args[6]) : 1;
+			GCStats gc = new GCStats();
+			ProbabilityModel pm = ProbabilityModel.newInstance();
+			if (workers > 1)
+				new CorpusIngester(swlist, workers).ingest(clist, pm);
+			else
+				for (Enumeration e = f.clist.elements(); e.hasMoreElements();) {
+					String fname = (String) e.nextElement();
+					System.err.print("\n----- Processing: " + fname
+							+ " ------\n");
+					f.indexNews(fname, pm);
+				}
 			System.gc();
 			System.err.println("Probability Model size " + pm.getTermSetSize());
 			Set rts = f.filter(termFilter, pm, category);
@@ -158,9 +201,12 @@ public class MakeProbabilityModel {
 			System.err.println("Saving probability model for "
 					+ pm.getTermSetSize() + " terms into " + pmfile);
 			IOUtil.dumpProbabilityModel(pm, pmfile);
+			System.err.println(gc);
+			if (pm instanceof OffHeapProbabilityModel)
+				((OffHeapProbabilityModel) pm).close();
 		} catch (Exception e) {
 			System.err
-					.println("\nUsage: MakeProbabilityModel CORPUS_LIST STOPWDLIST AGGRESSIVENESS TF_METHOD CATEG PMFILE");
+					.println("\nUsage: MakeProbabilityModel CORPUS_LIST STOPWDLIST AGGRESSIVENESS TF_METHOD CATEG PMFILE [WORKERS]");
 			System.err
 					.println("       tokenise each file in CORPUS_LIST, remove words in STOPWDLIST");
 			System.err
@@ -173,6 +219,8 @@ public class MakeProbabilityModel {
 			System.err.println("            'ig' (information gain)");
 			System.err.println("            'gss' (GSS coefficient)");
 			System.err.println("            'or' (Odds ratio)");
+			System.err.println("            'chi' (chi-square)");
+			System.err.println("            'mi' (mutual information)");
 
 			System.err.println(" CATEG: target category (e.g. 'acq'.) or");
 			System.err
@@ -184,7 +232,19 @@ public class MakeProbabilityModel {
 			System.err.println("            '_SUM' (sum of local scores),");
 			System.err
 					.println("            '_WAVG' (sum of local scores weighted by category generality),");
-			System.err.println(" PMFILE: output probability file\n");
+			System.err.println(" PMFILE: output probability file");
+			System.err
+					.println(" WORKERS: number of threads used to parse and tokenise CORPUS_LIST and to");
+			System.err
+					.println("          compute term scores (default 1)\n");
+			System.err
+					.println(" (run with -Dtc.parser=scan to read CORPUS_LIST with the byte-level Reuters scanner,");
+			System.err
+					.println("  -Dtc.cache=off to bypass the pre-tokenised corpus cache, FILE.tok, or");
+			System.err
+					.println("  -Dtc.cache.dir=DIR to keep it in DIR;");
+			System.err
+					.println("  -Dtc.model.storage=offheap to keep the term index out of the heap while building)\n");
 			// e.printStackTrace();
 		}
 	}
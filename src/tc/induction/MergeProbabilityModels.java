@@ -0,0 +1,76 @@
+package tc.induction;
+
+import tc.dstruct.MappedProbabilityModel;
+import tc.dstruct.ProbabilityModel;
+import tc.util.IOUtil;
+
+/**
+ * Merge probability models built separately (e.g. in different JVMs) from
+ * parts of a corpus into one (see ProbabilityModel.merge()).
+ *
+ * Usage:
+ *
+ * <pre>
+ *  MergeProbabilityModels [-replace] outfile pmfile ...
+ * </pre>
+ *
+ * The pmfiles (serialized or mapped) are merged in the order given, and the
+ * result is saved to outfile in the serialized format (see
+ * ConvertProbabilityModel for the mapped one). They should be built from
+ * consecutive parts of a corpus list without reducing their term sets (e.g.
+ * by MakeProbabilityModel with aggressiveness 1), in which case the result is
+ * the model built from the whole list; its term set can then be reduced by
+ * MakeReducedTermSet.
+ *
+ * The order matters. Models merged in another order hold the same terms,
+ * categories, documents and counts under different ids, and term space
+ * reduction may then keep different terms among those tied at its cut-off
+ * (see ProbabilityModel.merge()).
+ *
+ * A document found in more than one pmfile is an error, unless -replace is
+ * given, in which case the last pmfile's counts for it are kept.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see ProbabilityModel
+ * @see ShardMergeBenchmark
+ */
+public class MergeProbabilityModels {
+
+	public static void main(String[] args) {
+		try {
+			int a = 0;
+			boolean replace = false;
+			if (args[a].equals("-replace")) {
+				replace = true;
+				a++;
+			}
+			String outfile = args[a++];
+			if (a == args.length)
+				throw new IllegalArgumentException("no models to merge");
+			long start = System.nanoTime();
+			ProbabilityModel pm = null;
+			for (; a < args.length; a++) {
+				ProbabilityModel shard = IOUtil.loadProbabilityModel(args[a]);
+				if (shard == null)
+					throw new IllegalArgumentException("cannot load " + args[a]);
+				System.err.println("Merging " + args[a] + " (" + shard.corpusSize
+						+ " documents, " + shard.getTermSetSize() + " terms)");
+				if (pm == null)
+					pm = shard instanceof MappedProbabilityModel ? ((MappedProbabilityModel) shard)
+							.toProbabilityModel()
+							: shard;
+				else
+					pm.merge(shard, replace);
+			}
+			System.err.println("Merged " + pm.corpusSize + " documents, "
+					+ pm.getTermSetSize() + " terms, " + pm.getCategSetSize()
+					+ " categories in " + (System.nanoTime() - start) / 1000000
+					+ " ms");
+			IOUtil.dumpProbabilityModel(pm, outfile);
+		} catch (Exception e) {
+			System.err
+					.println("Usage: MergeProbabilityModels [-replace] OUTFILE PMFILE ...");
+			e.printStackTrace();
+		}
+	}
+}
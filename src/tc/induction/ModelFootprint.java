@@ -0,0 +1,174 @@
+package tc.induction;
+
+import java.util.Enumeration;
+
+import tc.dstruct.CompressedPostings;
+import tc.dstruct.CorpusList;
+import tc.dstruct.DocList;
+import tc.dstruct.OffHeapProbabilityModel;
+import tc.dstruct.Postings;
+import tc.dstruct.ProbabilityModel;
+import tc.dstruct.StopWordList;
+import tc.dstruct.WordScorePair;
+import tc.parser.CorpusCache;
+import tc.util.IOUtil;
+import tc.util.PrintUtil;
+
+/**
+ * Build a ProbabilityModel from a corpus list (or load one from a file) and
+ * report how much heap it occupies, in total and per posting (i.e. per (term,
+ * document) entry).
+ *
+ * Usage:
+ *
+ * <pre>
+ *  ModelFootprint corpus_list stopwdlist
+ *  ModelFootprint pmfile
+ * </pre>
+ *
+ * pmfile may hold a serialized or a mapped model (see
+ * MappedProbabilityModel); the time taken to load it is reported too.
+ *
+ * The heap in use is measured (after forcing garbage collection) before and
+ * after the model is built, with nothing but the model kept alive. Run with a
+ * fixed heap (e.g. -Xms2g -Xmx2g) for steadier figures.
+ *
+ * The postings are then compressed (see CompressedPostings), and their size
+ * as int arrays and compressed is reported, with the time taken to decode
+ * all of them and to intersect each with every category's document list in
+ * either form (the best of ROUNDS rounds).
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see ProbabilityModel
+ */
+public class ModelFootprint {
+
+	static final int ROUNDS = 3;
+
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		// a few rounds, since a single System.gc() may not collect everything
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+			}
+			used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+		}
+		return used;
+	}
+
+	/**
+	 * Report the size of the postings of pm as arrays and compressed, and
+	 * how long it takes to decode and to intersect them in either form
+	 */
+	private static void comparePostings(ProbabilityModel pm, long postings) {
+		int nterms = pm.getTermSetSize();
+		int ncats = pm.getCategSetSize();
+		Postings[] ps = new Postings[nterms];
+		CompressedPostings[] cps = new CompressedPostings[nterms];
+		DocList[] cats = new DocList[ncats];
+		long abytes = 0, cbytes = 0;
+		for (int t = 0; t < nterms; t++) {
+			ps[t] = pm.copyPostings(t);
+			cps[t] = new CompressedPostings(ps[t]);
+			abytes += ps[t].bytes();
+			cbytes += cps[t].bytes();
+		}
+		for (int c = 0; c < ncats; c++)
+			cats[c] = pm.copyDocList(c);
+		System.out.println("postings as arrays: " + abytes / 1024 + " KB ("
+				+ perPosting(abytes, postings) + " bytes per posting)");
+		System.out.println("compressed:         " + cbytes / 1024 + " KB ("
+				+ perPosting(cbytes, postings) + " bytes per posting)");
+		long adecode = Long.MAX_VALUE, cdecode = Long.MAX_VALUE;
+		long ainter = Long.MAX_VALUE, cinter = Long.MAX_VALUE;
+		long asum = 0, csum = 0, an = 0, cn = 0;
+		for (int r = 0; r < ROUNDS; r++) {
+			long start = System.nanoTime();
+			asum = 0;
+			for (int t = 0; t < nterms; t++)
+				for (int i = 0; i < ps[t].size(); i++)
+					asum += ps[t].get(i) + ps[t].getCount(i);
+			adecode = Math.min(adecode, System.nanoTime() - start);
+			start = System.nanoTime();
+			csum = 0;
+			for (int t = 0; t < nterms; t++)
+				for (CompressedPostings.Cursor cur = cps[t].cursor(); cur
+						.next();)
+					csum += cur.doc() + cur.count();
+			cdecode = Math.min(cdecode, System.nanoTime() - start);
+			start = System.nanoTime();
+			an = 0;
+			for (int t = 0; t < nterms; t++)
+				for (int c = 0; c < ncats; c++)
+					an += ps[t].intersectionCount(cats[c]);
+			ainter = Math.min(ainter, System.nanoTime() - start);
+			start = System.nanoTime();
+			cn = 0;
+			for (int t = 0; t < nterms; t++)
+				for (int c = 0; c < ncats; c++)
+					cn += cps[t].intersectionCount(cats[c]);
+			cinter = Math.min(cinter, System.nanoTime() - start);
+		}
+		System.out.println("decode:             arrays " + adecode / 1000000
+				+ " ms, compressed " + cdecode / 1000000 + " ms"
+				+ (asum == csum ? "" : " (MISMATCH)"));
+		System.out.println("intersect:          arrays " + ainter / 1000000
+				+ " ms, compressed " + cinter / 1000000 + " ms"
+				+ (an == cn ? "" : " (MISMATCH)"));
+	}
+
+	private static String perPosting(long bytes, long postings) {
+		return postings == 0 ? "0" : String.valueOf(Math
+				.round(10.0 * bytes / postings) / 10.0);
+	}
+
+	public static void main(String[] args) {
+		try {
+			long before = usedHeap();
+			ProbabilityModel pm;
+			if (args.length == 1) {
+				long start = System.nanoTime();
+				pm = IOUtil.loadProbabilityModel(args[0]);
+				System.out.println("loaded in:  "
+						+ (System.nanoTime() - start) / 1000000 + " ms ("
+						+ pm.getClass().getName() + ")");
+			} else {
+				CorpusList clist = new CorpusList(args[0]);
+				StopWordList swlist = new StopWordList(args[1]);
+				pm = ProbabilityModel.newInstance();
+				for (Enumeration<?> e = clist.elements(); e.hasMoreElements();)
+					CorpusCache.parse((String) e.nextElement(), pm
+							.getIndexer(swlist));
+				PrintUtil.donePrinting();
+			}
+			long bytes = usedHeap() - before;
+			WordScorePair[] wsp = pm.getBlankWordScoreArray();
+			long postings = 0;
+			for (int i = 0; i < wsp.length; i++)
+				postings += pm.getTermCount(wsp[i].getWord());
+			System.out.println("documents:  " + pm.getDocSet().size());
+			System.out.println("categories: " + pm.getCategSetSize());
+			System.out.println("terms:      " + pm.getTermSetSize());
+			System.out.println("postings:   " + postings);
+			System.out.println("heap:       " + bytes / 1024 + " KB ("
+					+ (postings == 0 ? 0 : bytes / postings)
+					+ " bytes per posting)");
+			if (pm instanceof OffHeapProbabilityModel)
+				System.out.println("off heap:   "
+						+ ((OffHeapProbabilityModel) pm).getOffHeapBytes()
+						/ 1024 + " KB");
+			// keep pm reachable until after the measurement
+			if (pm.corpusSize < 0)
+				System.out.println(pm);
+			comparePostings(pm, postings);
+		} catch (Exception e) {
+			System.err
+					.println("Usage: ModelFootprint CORPUS_LIST STOPWDLIST | PMFILE");
+			e.printStackTrace();
+		}
+	}
+}
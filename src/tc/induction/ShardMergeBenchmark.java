@@ -0,0 +1,175 @@
+package tc.induction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tc.dstruct.CorpusList;
+import tc.dstruct.DocList;
+import tc.dstruct.Postings;
+import tc.dstruct.ProbabilityModel;
+import tc.dstruct.StopWordList;
+import tc.parser.CorpusCache;
+import tc.util.PrintUtil;
+
+/**
+ * Build a ProbabilityModel from a corpus list by splitting the list into
+ * shards (runs of consecutive files), building a model for each shard on its
+ * own thread and merging the shard models (see ProbabilityModel.merge()), for
+ * several numbers of shards, and compare the time taken with that of building
+ * the model sequentially.
+ *
+ * Usage:
+ *
+ * <pre>
+ *  ShardMergeBenchmark corpus_list stopwdlist [shards ...]
+ * </pre>
+ *
+ * shards defaults to 2 4 8 16. The shard models are merged pairwise, as a
+ * tree, each level on as many threads as there are pairs; since merging is
+ * associative the result is the same as merging them one after another, in
+ * the same order. Each merged model is checked against the sequentially built
+ * one, which it should match exactly (same ids for the same terms, categories
+ * and documents).
+ * The sequential build is timed after an untimed warm-up build.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see ProbabilityModel
+ * @see MergeProbabilityModels
+ */
+public class ShardMergeBenchmark {
+
+	private static ProbabilityModel build(List<?> files, StopWordList swlist) {
+		ProbabilityModel pm = ProbabilityModel.newInstance();
+		for (int i = 0; i < files.size(); i++)
+			CorpusCache.parse((String) files.get(i), pm.getIndexer(swlist));
+		return pm;
+	}
+
+	/**
+	 * Merge models pairwise, a level of the tree at a time, using pool, and
+	 * return the result
+	 */
+	private static ProbabilityModel reduce(List<ProbabilityModel> models,
+			ExecutorService pool) throws Exception {
+		while (models.size() > 1) {
+			List<Future<ProbabilityModel>> merged = new ArrayList<Future<ProbabilityModel>>();
+			for (int i = 0; i + 1 < models.size(); i += 2) {
+				final ProbabilityModel a = models.get(i);
+				final ProbabilityModel b = models.get(i + 1);
+				merged.add(pool.submit(new Callable<ProbabilityModel>() {
+					public ProbabilityModel call() {
+						a.merge(b);
+						return a;
+					}
+				}));
+			}
+			List<ProbabilityModel> next = new ArrayList<ProbabilityModel>();
+			for (Future<ProbabilityModel> f : merged)
+				next.add(f.get());
+			if (models.size() % 2 == 1)
+				next.add(models.get(models.size() - 1));
+			models = next;
+		}
+		return models.get(0);
+	}
+
+	/**
+	 * @return null if a and b have the same terms, categories, documents and
+	 *         counts under the same ids, or a description of the first
+	 *         difference found
+	 */
+	private static String compare(ProbabilityModel a, ProbabilityModel b) {
+		if (a.corpusSize != b.corpusSize)
+			return "corpus size " + a.corpusSize + " vs " + b.corpusSize;
+		if (a.getTermSetSize() != b.getTermSetSize())
+			return "term set size";
+		if (a.getCategSetSize() != b.getCategSetSize())
+			return "category set size";
+		if (a.getDocSet().size() != b.getDocSet().size())
+			return "document set size";
+		for (int t = 0; t < a.getTermSetSize(); t++) {
+			if (!a.getTerm(t).equals(b.getTerm(t)))
+				return "term " + t;
+			Postings pa = a.copyPostings(t), pb = b.copyPostings(t);
+			if (pa.size() != pb.size())
+				return "postings of " + a.getTerm(t);
+			for (int i = 0; i < pa.size(); i++)
+				if (pa.get(i) != pb.get(i) || pa.getCount(i) != pb.getCount(i))
+					return "postings of " + a.getTerm(t);
+		}
+		for (int c = 0; c < a.getCategSetSize(); c++) {
+			DocList da = a.copyDocList(c), db = b.copyDocList(c);
+			if (da.size() != db.size())
+				return "documents of category " + c;
+			for (int i = 0; i < da.size(); i++)
+				if (da.get(i) != db.get(i))
+					return "documents of category " + c;
+		}
+		return null;
+	}
+
+	public static void main(String[] args) {
+		try {
+			CorpusList clist = new CorpusList(args[0]);
+			StopWordList swlist = new StopWordList(args[1]);
+			int[] nshards = { 2, 4, 8, 16 };
+			if (args.length > 2) {
+				nshards = new int[args.length - 2];
+				for (int i = 0; i < nshards.length; i++)
+					nshards[i] = Integer.parseInt(args[i + 2]);
+			}
+			// a warm-up build, so that the timed ones all run compiled code
+			build(clist, swlist);
+			long start = System.nanoTime();
+			ProbabilityModel seq = build(clist, swlist);
+			PrintUtil.donePrinting();
+			long seqTime = System.nanoTime() - start;
+			System.out.println("sequential: " + seq.corpusSize + " documents, "
+					+ seq.getTermSetSize() + " terms in " + seqTime / 1000000
+					+ " ms");
+			for (int k : nshards) {
+				ExecutorService pool = Executors.newFixedThreadPool(k);
+				try {
+					start = System.nanoTime();
+					List<Future<ProbabilityModel>> built = new ArrayList<Future<ProbabilityModel>>();
+					for (int s = 0; s < k; s++) {
+						final List<?> files = clist.subList(s * clist.size() / k,
+								(s + 1) * clist.size() / k);
+						final StopWordList sw = swlist;
+						built.add(pool.submit(new Callable<ProbabilityModel>() {
+							public ProbabilityModel call() {
+								return build(files, sw);
+							}
+						}));
+					}
+					List<ProbabilityModel> shards = new ArrayList<ProbabilityModel>();
+					for (Future<ProbabilityModel> f : built)
+						shards.add(f.get());
+					PrintUtil.donePrinting();
+					long buildTime = System.nanoTime() - start;
+					start = System.nanoTime();
+					ProbabilityModel pm = reduce(shards, pool);
+					long mergeTime = System.nanoTime() - start;
+					String diff = compare(seq, pm);
+					System.out.println(k + " shards: build " + buildTime
+							/ 1000000 + " ms, merge " + mergeTime / 1000000
+							+ " ms, total " + (buildTime + mergeTime) / 1000000
+							+ " ms ("
+							+ Math.round(100.0 * seqTime / (buildTime + mergeTime))
+							/ 100.0 + "x sequential)"
+							+ (diff == null ? "" : " (MODELS DIFFER: " + diff + ")"));
+				} finally {
+					pool.shutdownNow();
+				}
+			}
+		} catch (Exception e) {
+			System.err
+					.println("Usage: ShardMergeBenchmark CORPUS_LIST STOPWDLIST [SHARDS ...]");
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,365 @@
+package tc.parser;
+import tc.dstruct.*;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Read Reuters files through a cache of pre-tokenised news items, so
+ * that files which have been read before need not be parsed and
+ * tokenised again.
+ *
+ * The cache for a file holds, for each of its news items, the id,
+ * the categories and the sequence of tokens of its text, stored as
+ * ids in a dictionary of all tokens in the file. Tokens are stored
+ * as they occur in the text (before case folding and removal of
+ * dots), so that BagOfWords gets exactly the same terms, with or
+ * without stop word removal, as it would from the text itself. The
+ * cache records the length and modification time of the file it was
+ * made from, and is ignored (and rewritten) when these change.
+ *
+ * A cache is read into memory and checked (its length, header and
+ * checksum) before any of its news items is handed on, so a
+ * truncated or damaged cache is rewritten rather than partly read.
+ * It is written to a temporary file of its own and then moved into
+ * place atomically, so processes which miss the same cache at the
+ * same time each write a complete one, and the last one wins. No
+ * cache is kept for a file which cannot be read or parsed to the end.
+ *
+ * By default the cache of FILE is kept in FILE.tok. It is kept in
+ * directory DIR instead if the system property tc.cache.dir is set
+ * to DIR, and not used at all if tc.cache is set to 'off'.
+ *
+ * News items read from the cache have no text: their getText()
+ * returns their tokens separated by spaces, and their
+ * getTokenSequence() the tokens themselves.
+ *
+ * File layout (all numbers big-endian, 'varint' being an unsigned
+ * int in 7-bit groups, least significant first):
+ * <pre>
+ *   int magic, int version, long source length, long source mtime
+ *   for each news item:
+ *     byte 1, UTF id, varint no. of categories, UTF category ...,
+ *     varint no. of tokens, varint token id ...
+ *   byte 0
+ *   varint no. of tokens in dictionary, UTF token ...
+ *   int no. of news items, long offset of dictionary,
+ *   long CRC-32 of all the preceding bytes
+ * </pre>
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see  NewsParser
+ * @see  TokenSequence
+*/
+public class CorpusCache
+{
+
+  public static final String CACHE_PROPERTY = "tc.cache";
+  public static final String CACHE_DIR_PROPERTY = "tc.cache.dir";
+  public static final String CACHE_SUFFIX = ".tok";
+  private static final int MAGIC = 0x54435443;
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 24;
+  private static final int TRAILER_SIZE = 20;
+
+  /**
+   * Hand each news item in filename to listener, reading them from
+   * the cache if it is fresh, or parsing the file (and writing a new
+   * cache) otherwise.
+   */
+  public static void parse (String filename, NewsItemListener listener)
+  {
+    if ( !isEnabled() ) {
+      new NewsParser(filename).parse(listener);
+      return;
+    }
+    File source = new File(filename);
+    File cache = getCacheFile(filename);
+    byte[] data = null;
+    // a missing source has length and mtime 0, which must not match
+    if ( cache.exists() && source.isFile() )
+      data = readCache(source, cache);
+    if (data != null) {
+      System.err.println("reading tokens from "+cache);
+      replay(cache, data, listener);
+      return;
+    }
+    parseAndWrite(filename, source, cache, listener);
+  }
+
+  public static boolean isEnabled ()
+  {
+    return !"off".equals(System.getProperty(CACHE_PROPERTY));
+  }
+
+  public static File getCacheFile (String filename)
+  {
+    String dir = System.getProperty(CACHE_DIR_PROPERTY);
+    if (dir == null)
+      return new File(filename+CACHE_SUFFIX);
+    return new File(dir, new File(filename).getName()+CACHE_SUFFIX);
+  }
+
+  /**
+   * Read cache into memory and check that it is a complete, undamaged
+   * cache of source in its current state; return its contents if so,
+   * and null otherwise.
+   */
+  private static byte[] readCache (File source, File cache)
+  {
+    try {
+      RandomAccessFile raf = new RandomAccessFile(cache, "r");
+      byte[] data;
+      try {
+        long length = raf.length();
+        if ( length < HEADER_SIZE + 2 + TRAILER_SIZE || length > Integer.MAX_VALUE )
+          return null;
+        data = new byte[(int) length];
+        raf.readFully(data);
+      }
+      finally {
+        raf.close();
+      }
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+      if ( in.readInt() != MAGIC
+           || in.readInt() != VERSION
+           || in.readLong() != source.length()
+           || in.readLong() != source.lastModified() )
+        return null;
+      CRC32 crc = new CRC32();
+      crc.update(data, 0, data.length - 8);
+      in = new DataInputStream(new ByteArrayInputStream(data, data.length - 8, 8));
+      if ( in.readLong() != crc.getValue() ) {
+        System.err.println("Ignoring damaged corpus cache "+cache);
+        return null;
+      }
+      return data;
+    }
+    catch (IOException e) {
+      System.err.println("Ignoring unreadable corpus cache "+cache);
+      return null;
+    }
+  }
+
+  /**
+   * Hand each news item in data (a cache checked by readCache()) to
+   * listener
+   */
+  private static void replay (File cache, byte[] data, NewsItemListener listener)
+  {
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, data.length - TRAILER_SIZE, TRAILER_SIZE));
+      int nitems = in.readInt();
+      long offset = in.readLong();
+      if (offset < HEADER_SIZE || offset > data.length - TRAILER_SIZE)
+        throw new IOException("bad dictionary offset "+offset);
+      in = new DataInputStream(new ByteArrayInputStream(data, (int) offset, data.length - TRAILER_SIZE - (int) offset));
+      int n = readVarInt(in);
+      TokenDictionary dict = new TokenDictionary();
+      for (int i = 0; i < n; i++)
+        dict.add(in.readUTF());
+      in = new DataInputStream(new ByteArrayInputStream(data, HEADER_SIZE, (int) offset - HEADER_SIZE));
+      for (int k = 0; k < nitems; k++) {
+        if ( in.readByte() != 1 )
+          throw new IOException("expected "+nitems+" news items, found "+k);
+        ParsedNewsItem pni = new ParsedNewsItem();
+        pni.setId(in.readUTF());
+        int nc = readVarInt(in);
+        for (int i = 0; i < nc; i++)
+          pni.addCategory(in.readUTF());
+        int[] ids = new int[readVarInt(in)];
+        for (int i = 0; i < ids.length; i++)
+          ids[i] = readVarInt(in);
+        pni.setTokenSequence(new TokenSequence(dict, ids));
+        listener.newsItem(pni);
+      }
+      if ( in.readByte() != 0 )
+        throw new IOException("more than "+nitems+" news items");
+    }
+    catch (IOException e) {
+      // the checksum matched, so the cache was written wrongly; items
+      // already handed to listener can't be taken back
+      throw new IllegalStateException("Corrupt corpus cache "+cache+" (delete it and rerun): "+e.getMessage());
+    }
+  }
+
+  private static void parseAndWrite (String filename, File source, File cache, NewsItemListener listener)
+  {
+    Writer w = null;
+    File tmp = null;
+    try {
+      tmp = File.createTempFile(cache.getName(), ".tmp", cache.getAbsoluteFile().getParentFile());
+      w = new Writer(tmp, source, listener);
+    }
+    catch (IOException e) {
+      System.err.println("Cannot write corpus cache "+cache+": "+e.getMessage());
+      if (tmp != null)
+        tmp.delete();
+      new NewsParser(filename).parse(listener);
+      return;
+    }
+    if ( !new NewsParser(filename).parse(w) ) {
+      w.abort();
+      tmp.delete();
+      System.err.println("Not caching tokens of "+filename+" (parse failed)");
+    }
+    else if ( w.close() && moveIntoPlace(tmp, cache) )
+      System.err.println("tokens cached in "+cache);
+    else {
+      System.err.println("Cannot write corpus cache "+cache);
+      tmp.delete();
+    }
+  }
+
+  /**
+   * Replace cache with tmp in a single step, so that no reader sees a
+   * partly written cache
+   */
+  private static boolean moveIntoPlace (File tmp, File cache)
+  {
+    try {
+      Files.move(tmp.toPath(), cache.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      return true;
+    }
+    catch (IOException e) {
+      System.err.println("Cannot rename "+tmp+" to "+cache+": "+e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Tokenise each news item, write it to the cache and pass it on
+   * (with its token sequence) to the listener
+   */
+  private static class Writer implements NewsItemListener
+  {
+    private DataOutputStream out = null;
+    private CRC32 crc = new CRC32();
+    private int nitems = 0;
+    private NewsItemListener listener = null;
+    private TokenDictionary dict = new TokenDictionary();
+    private SpanTokenizer tkzr = new SpanTokenizer();
+    private int[] ids = new int[1024];
+    private IOException error = null;
+
+    Writer (File cache, File source, NewsItemListener listener)
+      throws IOException
+    {
+      this.listener = listener;
+      this.out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(new FileOutputStream(cache), crc), 1 << 16));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(source.length());
+      out.writeLong(source.lastModified());
+    }
+
+    public void newsItem (ParsedNewsItem pni)
+    {
+      int n = 0;
+      tkzr.reset(pni.getText());
+      while (tkzr.next()) {
+        if (n == ids.length) {
+          int[] nids = new int[2 * n];
+          System.arraycopy(ids, 0, nids, 0, n);
+          ids = nids;
+        }
+        ids[n++] = dict.add(tkzr.token());
+      }
+      int[] tids = new int[n];
+      System.arraycopy(ids, 0, tids, 0, n);
+      pni.setTokenSequence(new TokenSequence(dict, tids));
+      if (error == null)
+        try {
+          write(pni, tids);
+        }
+        catch (IOException e) {
+          error = e;
+        }
+      listener.newsItem(pni);
+    }
+
+    private void write (ParsedNewsItem pni, int[] tids)
+      throws IOException
+    {
+      out.writeByte(1);
+      out.writeUTF(pni.getId() == null ? "" : pni.getId());
+      writeVarInt(out, pni.getCategVector().size());
+      for (Enumeration<?> e = pni.getCategories() ; e.hasMoreElements() ;)
+        out.writeUTF((String) e.nextElement());
+      writeVarInt(out, tids.length);
+      for (int i = 0; i < tids.length; i++)
+        writeVarInt(out, tids[i]);
+      nitems++;
+    }
+
+    /**
+     * Close the file without completing it
+     */
+    void abort ()
+    {
+      try {
+        out.close();
+      }
+      catch (IOException e) {
+      }
+    }
+
+    /**
+     * Write the dictionary and close the file.
+     * @return false if the cache could not be written
+     */
+    boolean close ()
+    {
+      try {
+        if (error != null)
+          throw error;
+        out.writeByte(0);
+        long offset = out.size();
+        writeVarInt(out, dict.size());
+        for (int i = 0; i < dict.size(); i++)
+          out.writeUTF(dict.get(i));
+        out.writeInt(nitems);
+        out.writeLong(offset);
+        out.flush();
+        out.writeLong(crc.getValue());
+        out.close();
+        return true;
+      }
+      catch (IOException e) {
+        System.err.println("Error writing corpus cache: "+e.getMessage());
+        try {
+          out.close();
+        }
+        catch (IOException ce) {
+        }
+        return false;
+      }
+    }
+  }
+
+  static void writeVarInt (DataOutput out, int v)
+    throws IOException
+  {
+    while ( (v & ~0x7f) != 0 ) {
+      out.writeByte((v & 0x7f) | 0x80);
+      v >>>= 7;
+    }
+    out.writeByte(v);
+  }
+
+  static int readVarInt (DataInput in)
+    throws IOException
+  {
+    int v = 0;
+    for (int shift = 0; ; shift += 7) {
+      int b = in.readByte();
+      v |= (b & 0x7f) << shift;
+      if ( (b & 0x80) == 0 )
+        return v;
+    }
+  }
+
+}
@@ -0,0 +1,20 @@
+package tc.parser;
+import tc.dstruct.ParsedNewsItem;
+/**
+ *  Receive ParsedNewsItem's as they are parsed. Classes that consume
+ *  a Reuters file one news item at a time (rather than as a whole
+ *  ParsedText) must implement this interface
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see  NewsParser
+ * @see  TypeListHandler
+*/
+public interface NewsItemListener {
+
+  /**
+   * Called once for each news item, as soon as its REUTERS element
+   * has been closed.
+   */
+  void newsItem (ParsedNewsItem pni);
+
+}
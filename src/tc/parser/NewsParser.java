@@ -15,14 +15,28 @@ import org.xml.sax.InputSource;
 /**
  * Parse a Reuters file and store the results as a ParsedText object.
  * 
+ * By default files are read with the XML parser in xp.jar. Setting
+ * the system property tc.parser to 'scan' (e.g. java
+ * -Dtc.parser=scan ...) selects ReutersScanner instead, which
+ * memory-maps the file and scans it byte by byte.
+ * 
  * @author  Saturnino Luz &#60;luzs@acm.org&#62;
  * @version <font size=-1>$Id: NewsParser.java,v 1.4 2004/03/19 15:48:08 luzs Exp $</font>
  * @see  TypeListHandler
+ * @see  ReutersScanner
 */
 
 public class NewsParser
 {
 
+  /**
+   * Name of the system property which selects the parser: 'sax'
+   * (default) or 'scan'
+   */
+  public static final String PARSER_PROPERTY = "tc.parser";
+  public static final String SAX_PARSER = "sax";
+  public static final String SCAN_PARSER = "scan";
+
   private ParsedText parsedText = null;
   private String filename;
 
@@ -38,12 +52,34 @@ public class NewsParser
    */
   public void  parse ()
   {
+    TypeListHandler handler = new TypeListHandler();
+    if ( parse(handler) )
+      parsedText =  handler.getParsedText();
+  }
+
+  /** 
+   * Parse the file, handing each news item to listener as soon as
+   * its REUTERS element is closed. News items are not stored, so
+   * memory use does not grow with the size of the file.
+   * @return false if the file could not be read or parsed to the end
+   * (the error is reported on System.err); listener may then have
+   * received some of its news items
+   */
+  public boolean parse (NewsItemListener listener)
+  {
+    return parse(new TypeListHandler(listener));
+  }
+
+  private boolean parse (TypeListHandler handler)
+  {
+    if ( isScannerSelected() )
+      return scan(handler);
+    FileInputStream in = null;
     try {
-      FileInputStream in = new FileInputStream(filename);
+      in = new FileInputStream(filename);
       InputSource source = new InputSource(in);
       
       Parser parser = ParserFactory.makeParser("com.jclark.xml.sax.Driver");
-      TypeListHandler handler = new TypeListHandler();
       
       source.setEncoding("ISO-8859-1");
       parser.setDocumentHandler(handler);
@@ -52,13 +88,41 @@ public class NewsParser
       System.err.println("handler set ");
       parser.parse(source);
       System.err.println("xml parsed ");
-      parsedText =  handler.getParsedText();
+      return !handler.hasFatalError();
     }
     catch (Exception e) 
       {
         System.err.println("Error parsing "+filename);
         e.printStackTrace();
       }
+    finally {
+      if (in != null)
+        try {
+          in.close();
+        }
+        catch (IOException e) {
+        }
+    }
+    return false;
+  }
+
+  private boolean scan (TypeListHandler handler)
+  {
+    try {
+      new ReutersScanner(filename).scan(handler);
+      return true;
+    }
+    catch (Exception e) 
+      {
+        System.err.println("Error parsing "+filename);
+        e.printStackTrace();
+      }
+    return false;
+  }
+
+  public static boolean isScannerSelected ()
+  {
+    return SCAN_PARSER.equals(System.getProperty(PARSER_PROPERTY, SAX_PARSER));
   }
 
   public ParsedText getParsedText () {
@@ -0,0 +1,88 @@
+package tc.parser;
+import tc.dstruct.ParsedNewsItem;
+import java.io.File;
+
+/**
+ * Compare the throughput of the XML parser (xp/SAX) and of
+ * ReutersScanner on a set of Reuters files.
+ *
+ * Usage:
+ * <pre>
+ *  ParserBenchmark rounds file1 [file2 ...]
+ * </pre>
+ * Each parser reads all files once as a warm-up and then 'rounds'
+ * more times; the best round is reported in news items and megabytes
+ * per second. The news items produced by both parsers in the warm-up
+ * round are also checked to be identical.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see  NewsParser
+ * @see  ReutersScanner
+*/
+public class ParserBenchmark
+{
+
+  private static final String[] parsers = {NewsParser.SAX_PARSER, NewsParser.SCAN_PARSER};
+
+  /**
+   * Count news items and (optionally) fold their contents into a
+   * checksum
+   */
+  private static class Counter implements NewsItemListener
+  {
+    int items = 0;
+    long checksum = 0;
+    boolean check = false;
+
+    Counter (boolean check)
+    {
+      this.check = check;
+    }
+
+    public void newsItem (ParsedNewsItem pni)
+    {
+      items++;
+      if (check)
+        checksum = 31 * checksum + pni.toString().hashCode();
+    }
+  }
+
+  public static void main(String[] args) {
+    try {
+      int rounds = Integer.parseInt(args[0]);
+      long bytes = 0;
+      for (int i = 1; i < args.length; i++)
+        bytes += new File(args[i]).length();
+      long[] checksums = new long[parsers.length];
+      for (int p = 0; p < parsers.length; p++) {
+        System.setProperty(NewsParser.PARSER_PROPERTY, parsers[p]);
+        long best = Long.MAX_VALUE;
+        Counter c = null;
+        for (int r = 0; r <= rounds; r++) {
+          c = new Counter(r == 0);
+          long start = System.nanoTime();
+          for (int i = 1; i < args.length; i++)
+            new NewsParser(args[i]).parse(c);
+          long t = System.nanoTime() - start;
+          // round 0 is a warm-up
+          if (r == 0)
+            checksums[p] = c.checksum;
+          else if (t < best)
+            best = t;
+        }
+        double secs = best / 1e9;
+        System.out.println(parsers[p]+": "+c.items+" news items in "
+                           +(best / 1000000)+" ms = "
+                           +(long)(c.items / secs)+" items/s, "
+                           +((long)(bytes / secs / 1e4) / 100.0)+" MB/s");
+      }
+      System.out.println("Identical output: "+(checksums[0] == checksums[1]));
+    }
+    catch (Exception e){
+      System.err.println("tc.parser.ParserBenchmark: ");
+      System.err.println("Usage: ParserBenchmark ROUNDS FILENAME...");
+      e.printStackTrace();
+    }
+  }
+
+}
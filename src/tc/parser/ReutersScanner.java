@@ -0,0 +1,464 @@
+package tc.parser;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import org.xml.sax.AttributeList;
+import org.xml.sax.DocumentHandler;
+
+/**
+ * Scan a REUTERS-21578 file (encoded in XML, ISO-8859-1) directly at
+ * the byte level and report its elements to a TypeListHandler, as an
+ * alternative to the general purpose XML parser used by NewsParser.
+ *
+ * The file is memory-mapped and scanned once. Only the element names
+ * TypeListHandler is interested in (REUTERS, D, TOPICS, PLACES,
+ * PEOPLE, ORGS, TITLE and BODY) are recognised; every other element
+ * is reported under a single placeholder name, and the only
+ * attribute reported is NEWID. Character data is decoded (entity and
+ * character references, line ends) into a reusable buffer, and only
+ * inside REUTERS elements. Comments, processing instructions and the
+ * document type declaration are skipped; the input is not
+ * validated.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see  NewsParser
+ * @see  TypeListHandler
+*/
+// reports to the repository's SAX 1 handlers (DocumentHandler, AttributeList)
+@SuppressWarnings("deprecation")
+public class ReutersScanner
+{
+
+  private static final String newsTag = "REUTERS";
+  private static final String otherTag = "";
+  private static final String[] knownTags =  {"D", "TOPICS","PEOPLE","PLACES","ORGS", "TITLE","BODY"};
+  private static final byte[][] knownTagBytes = new byte[knownTags.length][];
+  private static final byte[] newsTagBytes = newsTag.getBytes();
+  private static final byte[] newidBytes = "NEWID".getBytes();
+
+  static {
+    for (int i = 0; i < knownTags.length; i++)
+      knownTagBytes[i] = knownTags[i].getBytes();
+  }
+
+  private ByteBuffer buf = null;
+  private String filename = null;
+  private DocumentHandler handler = null;
+  private char[] chars = new char[4096];
+  private NewsIdAttribute newsId = new NewsIdAttribute();
+  private boolean inNews = false;
+
+  public ReutersScanner (String filename)
+  {
+    this.filename = filename;
+  }
+
+  /**
+   * Scan Reuters news items held in memory (e.g. a fragment of a
+   * Reuters file), from buf's position up to its limit.
+   */
+  public ReutersScanner (ByteBuffer buf)
+  {
+    this.buf = buf;
+  }
+
+  /**
+   * Map the file into memory (unless this scanner was given a
+   * buffer) and scan it, handing each news item to listener as soon
+   * as its REUTERS element is closed.
+   * @throws IOException also if the input ends inside a REUTERS
+   * element
+   */
+  public void  parse (NewsItemListener listener)
+    throws IOException
+  {
+    scan(new TypeListHandler(listener));
+  }
+
+  public void  scan (DocumentHandler handler)
+    throws IOException
+  {
+    this.handler = handler;
+    if (buf == null)
+      buf = map(filename);
+    try {
+      scan(buf.position(), buf.limit());
+    }
+    catch (org.xml.sax.SAXException e) {
+      throw new IOException("Error scanning "+filename+": "+e.getMessage());
+    }
+    if (inNews)
+      throw new IOException("Error scanning "+filename+": missing end-tag "+newsTag);
+  }
+
+  public static MappedByteBuffer map (String filename)
+    throws IOException
+  {
+    RandomAccessFile raf = new RandomAccessFile(filename, "r");
+    try {
+      FileChannel fc = raf.getChannel();
+      return fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+    }
+    finally {
+      raf.close();
+    }
+  }
+
+  private void scan (int pos, int end)
+    throws org.xml.sax.SAXException
+  {
+    while (pos < end) {
+      int lt = indexOf((byte)'<', pos, end);
+      if (inNews && lt > pos)
+        characters(pos, lt);
+      if (lt >= end)
+        break;
+      pos = markup(lt, end);
+    }
+  }
+
+  /**
+   * Handle the markup starting at lt ('<') and return the position
+   * just after it
+   */
+  private int markup (int lt, int end)
+    throws org.xml.sax.SAXException
+  {
+    int p = lt + 1;
+    byte b = p < end ? buf.get(p) : 0;
+    if (b == '/') {
+      int ns = p + 1;
+      int ne = nameEnd(ns, end);
+      endElement(tagName(ns, ne));
+      return skipPast((byte)'>', ne, end);
+    }
+    if (b == '?')
+      return skipPast("?>", p, end);
+    if (b == '!') {
+      if (startsWith("<!--", lt, end))
+        return skipPast("-->", lt + 4, end);
+      if (startsWith("<![CDATA[", lt, end)) {
+        int ce = indexOf("]]>", lt + 9, end);
+        if (inNews)
+          rawCharacters(lt + 9, ce);
+        return ce >= end ? end : ce + 3;
+      }
+      return skipDeclaration(p, end);
+    }
+    int ne = nameEnd(p, end);
+    String name = tagName(p, ne);
+    // scan attributes up to the end of the tag
+    boolean isNews = name == newsTag;
+    if (isNews)
+      newsId.value = null;
+    int q = ne;
+    boolean empty = false;
+    while (q < end) {
+      byte c = buf.get(q);
+      if (c == '>')
+        break;
+      if (c == '"' || c == '\'') {
+        q = indexOf(c, q + 1, end) + 1;
+        continue;
+      }
+      if (isNews && c == 'N' && isSpace(buf.get(q - 1))
+          && startsWith(newidBytes, q, end))
+        q = newsIdValue(q + newidBytes.length, end);
+      else
+        q++;
+    }
+    if (q > ne && buf.get(q - 1) == '/')
+      empty = true;
+    if (isNews) {
+      inNews = true;
+      handler.startElement(name, newsId);
+    }
+    else
+      handler.startElement(name, null);
+    if (empty)
+      endElement(name);
+    return q >= end ? end : q + 1;
+  }
+
+  private void endElement (String name)
+    throws org.xml.sax.SAXException
+  {
+    handler.endElement(name);
+    if (name == newsTag)
+      inNews = false;
+  }
+
+  /**
+   * Read the value of NEWID (starting just after the attribute name)
+   * and return the position after its closing quote
+   */
+  private int newsIdValue (int p, int end)
+  {
+    while (p < end && isSpace(buf.get(p)))
+      p++;
+    if (p >= end || buf.get(p) != '=')
+      return p;
+    p++;
+    while (p < end && isSpace(buf.get(p)))
+      p++;
+    if (p >= end)
+      return p;
+    byte quote = buf.get(p);
+    int ve = indexOf(quote, p + 1, end);
+    int n = decode(p + 1, ve, 0);
+    newsId.value = new String(chars, 0, n);
+    return ve + 1;
+  }
+
+  /**
+   * Return the canonical name of the element whose name occupies
+   * [start, end): one of newsTag or knownTags (the same String object
+   * every time), or otherTag for elements TypeListHandler ignores
+   */
+  private String tagName (int start, int end)
+  {
+    int len = end - start;
+    if (len == newsTagBytes.length && regionMatches(newsTagBytes, start, false))
+      return newsTag;
+    if (len == 1)
+      return buf.get(start) == 'D' ? knownTags[0] : otherTag;
+    for (int i = 1; i < knownTagBytes.length; i++)
+      if ( len == knownTagBytes[i].length && regionMatches(knownTagBytes[i], start, true) )
+        return knownTags[i];
+    return otherTag;
+  }
+
+  private boolean regionMatches (byte[] name, int start, boolean ignoreCase)
+  {
+    for (int i = 0; i < name.length; i++) {
+      int c = buf.get(start + i);
+      if (ignoreCase && c >= 'a' && c <= 'z')
+        c -= 'a' - 'A';
+      if (c != name[i])
+        return false;
+    }
+    return true;
+  }
+
+  private void characters (int start, int end)
+    throws org.xml.sax.SAXException
+  {
+    int n = decode(start, end, 0);
+    if (n > 0)
+      handler.characters(chars, 0, n);
+  }
+
+  private void rawCharacters (int start, int end)
+    throws org.xml.sax.SAXException
+  {
+    ensureCapacity(end - start);
+    int n = 0;
+    for (int i = start; i < end; i++)
+      n = putChar(n, buf.get(i) & 0xff, i + 1 < end ? buf.get(i + 1) : 0);
+    if (n > 0)
+      handler.characters(chars, 0, n);
+  }
+
+  /**
+   * Decode ISO-8859-1 bytes in [start, end) into chars (from position
+   * n), resolving entity and character references and normalising
+   * line ends, as an XML parser would. Return the new length of chars.
+   */
+  private int decode (int start, int end, int n)
+  {
+    ensureCapacity(n + end - start);
+    for (int i = start; i < end; i++) {
+      int c = buf.get(i) & 0xff;
+      if (c == '&') {
+        int semi = indexOf((byte)';', i + 1, end);
+        if (semi < end) {
+          int r = reference(i + 1, semi);
+          if (r >= 0) {
+            chars[n++] = (char) r;
+            i = semi;
+            continue;
+          }
+        }
+      }
+      n = putChar(n, c, i + 1 < end ? buf.get(i + 1) : 0);
+    }
+    return n;
+  }
+
+  private int putChar (int n, int c, byte next)
+  {
+    if (c == '\r') {
+      if (next != '\n')
+        chars[n++] = '\n';
+    }
+    else
+      chars[n++] = (char) c;
+    return n;
+  }
+
+  /**
+   * Resolve the reference whose name occupies [start, end) (i.e.
+   * between '&' and ';'), or return -1 if it is not recognised
+   */
+  private int reference (int start, int end)
+  {
+    int len = end - start;
+    if (len < 2)
+      return -1;
+    if (buf.get(start) == '#') {
+      int radix = 10;
+      int p = start + 1;
+      if (buf.get(p) == 'x') {
+        radix = 16;
+        p++;
+      }
+      if (p >= end)
+        return -1;
+      int v = 0;
+      for (; p < end; p++) {
+        int d = Character.digit((char) buf.get(p), radix);
+        if (d < 0 || v > 0xffff)
+          return -1;
+        v = v * radix + d;
+      }
+      return v > 0xffff ? -1 : v;
+    }
+    byte b0 = buf.get(start), b1 = buf.get(start + 1);
+    if (len == 2 && b1 == 't')
+      return b0 == 'l' ? '<' : b0 == 'g' ? '>' : -1;
+    if (len == 3 && b0 == 'a' && b1 == 'm' && buf.get(start + 2) == 'p')
+      return '&';
+    if (len == 4 && startsWith("quot", start, end))
+      return '"';
+    if (len == 4 && startsWith("apos", start, end))
+      return '\'';
+    return -1;
+  }
+
+  private void ensureCapacity (int size)
+  {
+    if (size > chars.length)
+      chars = new char[Math.max(size, 2 * chars.length)];
+  }
+
+  private int skipDeclaration (int p, int end)
+  {
+    // <!DOCTYPE ...> may contain an internal subset in square brackets
+    int depth = 0;
+    for (; p < end; p++) {
+      byte c = buf.get(p);
+      if (c == '[')
+        depth++;
+      else if (c == ']')
+        depth--;
+      else if (c == '>' && depth <= 0)
+        return p + 1;
+    }
+    return end;
+  }
+
+  private int nameEnd (int p, int end)
+  {
+    while (p < end) {
+      byte c = buf.get(p);
+      if (c == '>' || c == '/' || isSpace(c))
+        break;
+      p++;
+    }
+    return p;
+  }
+
+  private static boolean isSpace (byte c)
+  {
+    return c == ' ' || c == '\n' || c == '\t' || c == '\r';
+  }
+
+  private int indexOf (byte b, int from, int end)
+  {
+    for (int i = from; i < end; i++)
+      if (buf.get(i) == b)
+        return i;
+    return end;
+  }
+
+  private int indexOf (String s, int from, int end)
+  {
+    byte first = (byte) s.charAt(0);
+    for (int i = indexOf(first, from, end); i < end; i = indexOf(first, i + 1, end))
+      if (startsWith(s, i, end))
+        return i;
+    return end;
+  }
+
+  private int skipPast (byte b, int from, int end)
+  {
+    int i = indexOf(b, from, end);
+    return i >= end ? end : i + 1;
+  }
+
+  private int skipPast (String s, int from, int end)
+  {
+    int i = indexOf(s, from, end);
+    return i >= end ? end : i + s.length();
+  }
+
+  private boolean startsWith (String s, int p, int end)
+  {
+    if (p + s.length() > end)
+      return false;
+    for (int i = 0; i < s.length(); i++)
+      if (buf.get(p + i) != s.charAt(i))
+        return false;
+    return true;
+  }
+
+  private boolean startsWith (byte[] s, int p, int end)
+  {
+    if (p + s.length > end)
+      return false;
+    for (int i = 0; i < s.length; i++)
+      if (buf.get(p + i) != s[i])
+        return false;
+    return true;
+  }
+
+  /**
+   * The (only) attribute reported for REUTERS elements
+   */
+  private static class NewsIdAttribute implements AttributeList
+  {
+    String value = null;
+
+    public int getLength ()
+    {
+      return value == null ? 0 : 1;
+    }
+
+    public String getName (int i)
+    {
+      return i == 0 && value != null ? "NEWID" : null;
+    }
+
+    public String getType (int i)
+    {
+      return i == 0 && value != null ? "CDATA" : null;
+    }
+
+    public String getValue (int i)
+    {
+      return i == 0 ? value : null;
+    }
+
+    public String getType (String name)
+    {
+      return "NEWID".equals(name) && value != null ? "CDATA" : null;
+    }
+
+    public String getValue (String name)
+    {
+      return "NEWID".equals(name) ? value : null;
+    }
+  }
+
+}
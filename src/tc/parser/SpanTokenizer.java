@@ -0,0 +1,209 @@
+package tc.parser;
+/**
+ *  Split text into the same tokens as Tokenizer, without allocating
+ *  a String per token.
+ *
+ *  Separators (Tokenizer.SEPTKARR) are looked up in a 256-entry
+ *  table. Each call to next() finds the next token, reports its
+ *  position in the text as an (offset, length) span, and copies it
+ *  into a reusable buffer with dots removed and (optionally) case
+ *  folded, as Tokenizer.fixType(token.toLowerCase()) would, all in
+ *  the same pass. The buffer is overwritten by the next call to
+ *  next().
+ *
+ *  Typical use:
+ *  <pre>
+ *    SpanTokenizer tk = new SpanTokenizer(text);
+ *    while (tk.next())
+ *      if (tk.termLength() > 0)
+ *        ... tk.termBuffer(), 0, tk.termLength() ...
+ *  </pre>
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see  Tokenizer
+*/
+public class SpanTokenizer {
+
+  private static final boolean[] SEPARATOR = new boolean[256];
+  /**
+   * true if String.toLowerCase() folds ASCII letters in the usual
+   * way in the default locale (it doesn't in e.g. Turkish)
+   */
+  private static final boolean ASCII_FOLD = "I".toLowerCase().equals("i");
+
+  static {
+    for (int i = 0; i < Tokenizer.SEPTKARR.length; i++)
+      SEPARATOR[Tokenizer.SEPTKARR[i]] = true;
+  }
+
+  private CharSequence text = null;
+  private int pos = 0;
+  private int end = 0;
+  private int offset = 0;
+  private int length = 0;
+  private char[] term = new char[64];
+  private int termLength = 0;
+  private boolean dots = false;
+  private boolean foldCase = true;
+
+  public SpanTokenizer ()
+  {
+    this("");
+  }
+
+  public SpanTokenizer (CharSequence text)
+  {
+    reset(text);
+  }
+
+  /**
+   * Start tokenising a new text (so that the same tokenizer and
+   * buffer can be reused across texts)
+   */
+  public void reset (CharSequence text)
+  {
+    reset(text, 0, text.length());
+  }
+
+  public void reset (CharSequence text, int start, int end)
+  {
+    this.text = text;
+    this.pos = start;
+    this.end = end;
+    this.length = 0;
+    this.termLength = 0;
+  }
+
+  public static boolean isSeparator (char c)
+  {
+    return c < 256 && SEPARATOR[c];
+  }
+
+  /**
+   * Advance to the next token.
+   * @return false if there are no more tokens
+   */
+  public boolean next ()
+  {
+    CharSequence t = text;
+    int p = pos;
+    while (p < end && isSeparator(t.charAt(p)))
+      p++;
+    if (p >= end) {
+      pos = end;
+      length = termLength = 0;
+      return false;
+    }
+    offset = p;
+    if (term.length < end - p)
+      term = new char[Math.max(end - p, 2 * term.length)];
+    char[] tm = term;
+    int n = 0;
+    boolean ascii = true;
+    dots = false;
+    for (; p < end; p++) {
+      char c = t.charAt(p);
+      if ( isSeparator(c) )
+        break;
+      if (c >= 128)
+        ascii = false;
+      else if (c == '.') {
+        dots = true;
+        continue;
+      }
+      else if (foldCase && c >= 'A' && c <= 'Z')
+        c += 'a' - 'A';
+      tm[n++] = c;
+    }
+    pos = p;
+    length = p - offset;
+    termLength = n;
+    if ( foldCase && (!ascii || !ASCII_FOLD) )
+      foldSlowly();
+    return true;
+  }
+
+  /**
+   * Fold case with String.toLowerCase(), which some (non-ASCII)
+   * characters need, e.g. a final sigma
+   */
+  private void foldSlowly ()
+  {
+    String lc = Tokenizer.fixType(token().toLowerCase());
+    termLength = lc.length();
+    if (term.length < termLength)
+      term = new char[termLength];
+    lc.getChars(0, termLength, term, 0);
+  }
+
+  /**
+   * @return position of the current token in the text
+   */
+  public int offset ()
+  {
+    return offset;
+  }
+
+  /**
+   * @return length of the current token, as it occurs in the text
+   */
+  public int length ()
+  {
+    return length;
+  }
+
+  /**
+   * @return the current token, as it occurs in the text
+   */
+  public String token ()
+  {
+    return text.subSequence(offset, offset + length).toString();
+  }
+
+  /**
+   * @return buffer holding the current token without dots (and in
+   * lower case, if foldCase is set), from position 0 to termLength()
+   */
+  public char[] termBuffer ()
+  {
+    return term;
+  }
+
+  public int termLength ()
+  {
+    return termLength;
+  }
+
+  /**
+   * @return the contents of termBuffer() as a String
+   */
+  public String term ()
+  {
+    return new String(term, 0, termLength);
+  }
+
+  /**
+   * @return true if dots were removed from the current token
+   */
+  public boolean hadDots ()
+  {
+    return dots;
+  }
+
+  /**
+   * Get the value of foldCase.
+   * @return value of foldCase.
+   */
+  public boolean isFoldCase() {
+    return foldCase;
+  }
+
+  /**
+   * Set the value of foldCase.
+   * @param v  Value to assign to foldCase.
+   */
+  public void setFoldCase(boolean v) {
+    this.foldCase = v;
+  }
+
+}
@@ -0,0 +1,160 @@
+package tc.parser;
+import tc.dstruct.ParsedNewsItem;
+import tc.dstruct.ParsedText;
+import tc.dstruct.StopWordList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Compare the throughput of Tokenizer (followed by toLowerCase() and
+ * Tokenizer.fixType(), as BagOfWords used to do) and SpanTokenizer
+ * on the texts of a set of Reuters files.
+ *
+ * Usage:
+ * <pre>
+ *  TokenizerBenchmark rounds [-s stopwdlist] file1 [file2 ...]
+ * </pre>
+ * The files are parsed once; their texts are then tokenised 'rounds'
+ * times (after a warm-up round) by each tokenizer, and the best round
+ * is reported in tokens per second. Both tokenizers are checked to
+ * produce the same terms.
+ *
+ * With -s, the texts are also tokenised with stop words removed: by
+ * Tokenizer, looking each token up (in lower case) in a Vector of
+ * stop words, as StopWordList used to do, and by SpanTokenizer,
+ * looking tokens up in a StopWordList in place.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see  Tokenizer
+ * @see  SpanTokenizer
+*/
+public class TokenizerBenchmark
+{
+
+  private static long tokenizerRound (List<String> texts, boolean check, List<String> terms)
+  {
+    long n = 0;
+    for (Iterator<String> i = texts.iterator(); i.hasNext(); ) {
+      Tokenizer tkzr = new Tokenizer(i.next());
+      while (tkzr.hasMoreTokens()) {
+        String t = Tokenizer.fixType(tkzr.nextToken().toLowerCase());
+        n += t.length();
+        if (check)
+          terms.add(t);
+      }
+    }
+    return n;
+  }
+
+  private static long spanTokenizerRound (List<String> texts, boolean check, List<String> terms)
+  {
+    long n = 0;
+    SpanTokenizer tkzr = new SpanTokenizer();
+    for (Iterator<String> i = texts.iterator(); i.hasNext(); ) {
+      tkzr.reset(i.next());
+      while (tkzr.next()) {
+        n += tkzr.termLength();
+        if (check)
+          terms.add(tkzr.term());
+      }
+    }
+    return n;
+  }
+
+  private static long vectorStopListRound (List<String> texts, Vector<String> stoplist, boolean check, List<String> terms)
+  {
+    long n = 0;
+    for (Iterator<String> i = texts.iterator(); i.hasNext(); ) {
+      Tokenizer tkzr = new Tokenizer(i.next());
+      while (tkzr.hasMoreTokens()) {
+        String tk = tkzr.nextToken();
+        if (stoplist.contains(tk.toLowerCase()))
+          continue;
+        String t = Tokenizer.fixType(tk.toLowerCase());
+        n += t.length();
+        if (check)
+          terms.add(t);
+      }
+    }
+    return n;
+  }
+
+  private static long stopWordListRound (List<String> texts, StopWordList swlist, boolean check, List<String> terms)
+  {
+    long n = 0;
+    SpanTokenizer tkzr = new SpanTokenizer();
+    for (Iterator<String> i = texts.iterator(); i.hasNext(); ) {
+      tkzr.reset(i.next());
+      while (tkzr.next()) {
+        if ( tkzr.hadDots() ? swlist.contains(tkzr.token())
+             : swlist.contains(tkzr.termBuffer(), 0, tkzr.termLength()) )
+          continue;
+        n += tkzr.termLength();
+        if (check)
+          terms.add(tkzr.term());
+      }
+    }
+    return n;
+  }
+
+  public static void main(String[] args) {
+    try {
+      int rounds = Integer.parseInt(args[0]);
+      int first = 1;
+      StopWordList swlist = null;
+      if (args[1].equals("-s")) {
+        swlist = new StopWordList(args[2]);
+        first = 3;
+      }
+      List<String> texts = new ArrayList<String>();
+      for (int i = first; i < args.length; i++) {
+        ParsedText pt = new NewsParser(args[i]).getParsedText();
+        for (Iterator<?> j = pt.iterator(); j.hasNext(); )
+          texts.add(((ParsedNewsItem) j.next()).getText());
+      }
+      List<List<String>> terms = new ArrayList<List<String>>();
+      for (int k = 0; k < 4; k++)
+        terms.add(new ArrayList<String>());
+      String[] names = {"Tokenizer", "SpanTokenizer",
+                        "Tokenizer + Vector stop list", "SpanTokenizer + StopWordList"};
+      Vector<String> stoplist = null;
+      if (swlist != null) {
+        stoplist = new Vector<String>();
+        for (Object w : swlist)
+          stoplist.add((String) w);
+      }
+      for (int k = 0; k < (swlist == null ? 2 : names.length); k++) {
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r <= rounds; r++) {
+          long start = System.nanoTime();
+          if (k == 0)
+            tokenizerRound(texts, r == 0, terms.get(k));
+          else if (k == 1)
+            spanTokenizerRound(texts, r == 0, terms.get(k));
+          else if (k == 2)
+            vectorStopListRound(texts, stoplist, r == 0, terms.get(k));
+          else
+            stopWordListRound(texts, swlist, r == 0, terms.get(k));
+          long t = System.nanoTime() - start;
+          // round 0 is a warm-up
+          if (r > 0 && t < best)
+            best = t;
+        }
+        System.out.println(names[k]+": "+terms.get(k).size()+" tokens in "
+                           +(best / 1000000)+" ms = "
+                           +(long)(terms.get(k).size() / (best / 1e9))+" tokens/s");
+      }
+      System.out.println("Identical output: "+terms.get(0).equals(terms.get(1)));
+      if (swlist != null)
+        System.out.println("Identical output with stop list: "+terms.get(2).equals(terms.get(3)));
+    }
+    catch (Exception e){
+      System.err.println("tc.parser.TokenizerBenchmark: ");
+      System.err.println("Usage: TokenizerBenchmark ROUNDS [-s STOPWDLIST] FILENAME...");
+      e.printStackTrace();
+    }
+  }
+
+}
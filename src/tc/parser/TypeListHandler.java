@@ -2,6 +2,7 @@ package tc.parser;
 import tc.dstruct.*;
 import java.util.Vector;
 import java.util.Enumeration;
+import java.util.HashMap;
 import org.xml.sax.HandlerBase;
 import org.xml.sax.AttributeList;
 import org.xml.sax.DocumentHandler;
@@ -20,13 +21,34 @@ import org.xml.sax.SAXParseException;
 public class TypeListHandler extends HandlerBase 
 {
 
-  private String content = null;
   private String reutersid = null;
   private int error = 0;
+  private int fatalErrors = 0;
   private boolean openCategory = false;
   private boolean openText = false;
   private ParsedNewsItem parsedNewsItem = new ParsedNewsItem();
-  private ParsedText parsedText = new ParsedText();
+  private ParsedText parsedText = null;
+  private NewsItemListener listener = null;
+  /**
+   * Contents of the category or text element currently open. All
+   * chunks reported by characters() are accumulated here; the buffer
+   * is reused across elements and news items.
+   */
+  private char[] content = new char[256];
+  private int contentLength = 0;
+  private boolean hasContent = false;
+  /**
+   * Text (TITLE and BODY, separated by a space) of the current news
+   * item, copied into a String only once, when the item is closed.
+   */
+  private char[] text = new char[4096];
+  private int textLength = 0;
+  private boolean hasText = false;
+  /**
+   * Element type of each element name seen so far, so that names
+   * need not be upper-cased on every start and end tag
+   */
+  private HashMap<String,Integer> elementTypes = new HashMap<String,Integer>();
   //private Vector catTextVector = new Vector(); 
   /**
    * Categories annotated in REUTERS-21578
@@ -34,50 +56,96 @@ public class TypeListHandler extends HandlerBase
   private static final String[] categoryArray =  {"TOPICS","PEOPLE","PLACES","ORGS"};
   private static final String[] textArray =  {"TITLE","BODY"};
   private static final String newsTag = "REUTERS";
+  private static final String categoryEntryTag = "D";
+
+  private static final int OTHER_ELEMENT = 0;
+  private static final int NEWS_ELEMENT = 1;
+  private static final int CATEGORY_ELEMENT = 2;
+  private static final int TEXT_ELEMENT = 3;
+  private static final int CATEGORY_ENTRY_ELEMENT = 4;
+
+  /**
+   * Collect every news item into a ParsedText (see getParsedText())
+   */
+  public TypeListHandler ()
+  {
+    super();
+    this.parsedText = new ParsedText();
+    this.listener = parsedText;
+  }
 
+  /**
+   * Hand each news item to listener as soon as it has been parsed,
+   * without keeping a reference to it.
+   */
+  public TypeListHandler (NewsItemListener listener)
+  {
+    super();
+    this.listener = listener;
+  }
 
   public void startElement (String name, AttributeList atts)
   {
-    if ( newsItemElement(name) )
+    switch ( elementType(name) ) {
+    case NEWS_ELEMENT:
       reutersid = atts.getValue("NEWID");
-    if ( categoryElement(name) )
+      clearContent();
+      break;
+    case CATEGORY_ELEMENT:
       openCategory = true;
-    else if ( textElement(name) )
+      break;
+    case TEXT_ELEMENT:
       openText = true;
-    else
-      content = null;
+      break;
+    default:
+      clearContent();
+    }
   }
   
   public void endElement (String name)
   {
-    if (name.equals("D") && (content != null) )
-      parsedNewsItem.addCategory(new String(content));
-    if ( categoryElement(name) )
-      {
-        openCategory = false;
-        if (content != null) 
-          parsedNewsItem.addCategory(new String(content));
-      }
-    if ( textElement(name) )
-      {
-        openText = false;
-        if (content != null) 
-          parsedNewsItem.addText(new String(content));
-      }
-    content = null;
-    if ( newsItemElement(name) ) {
+    switch ( elementType(name) ) {
+    case CATEGORY_ENTRY_ELEMENT:
+      if (hasContent)
+        parsedNewsItem.addCategory(new String(content, 0, contentLength));
+      break;
+    case CATEGORY_ELEMENT:
+      openCategory = false;
+      if (hasContent) 
+        parsedNewsItem.addCategory(new String(content, 0, contentLength));
+      break;
+    case TEXT_ELEMENT:
+      openText = false;
+      if (hasContent) 
+        appendText();
+      break;
+    case NEWS_ELEMENT:
       parsedNewsItem.setId(reutersid);
-      parsedText.addNewsItem(parsedNewsItem);
+      if (hasText)
+        parsedNewsItem.setText(new String(text, 0, textLength));
+      listener.newsItem(parsedNewsItem);
       parsedNewsItem = new ParsedNewsItem();
+      textLength = 0;
+      hasText = false;
+      break;
     }
+    clearContent();
   }
   
   public void characters (char ch[], int start, int length)
   { 
-    if ( openCategory || openText )
-      content = new String(ch,start,length);
+    if ( openCategory || openText ) {
+      content = ensureCapacity(content, contentLength + length);
+      System.arraycopy(ch, start, content, contentLength, length);
+      contentLength += length;
+      hasContent = true;
+    }
   }
   
+  /**
+   * @return the news items parsed so far, or null if this handler
+   * was created to stream news items to a NewsItemListener
+   */
   public ParsedText getParsedText ()
   {
     return parsedText;
@@ -87,24 +155,73 @@ public class TypeListHandler extends HandlerBase
    *  Utilities
    */
   
+  private void clearContent ()
+  {
+    contentLength = 0;
+    hasContent = false;
+  }
+
+  /**
+   * Append the contents of the text element just closed to the text
+   * of the current news item (cf. ParsedNewsItem.addText())
+   */
+  private void appendText ()
+  {
+    int sep = hasText ? 1 : 0;
+    text = ensureCapacity(text, textLength + sep + contentLength);
+    if (hasText)
+      text[textLength++] = ' ';
+    System.arraycopy(content, 0, text, textLength, contentLength);
+    textLength += contentLength;
+    hasText = true;
+  }
+
+  private static char[] ensureCapacity (char[] buf, int size)
+  {
+    if (size <= buf.length)
+      return buf;
+    char[] nb = new char[Math.max(size, 2 * buf.length)];
+    System.arraycopy(buf, 0, nb, 0, buf.length);
+    return nb;
+  }
+
+  private int elementType (String name)
+  {
+    Integer type = elementTypes.get(name);
+    if (type == null) {
+      if ( newsItemElement(name) )
+        type = NEWS_ELEMENT;
+      else if ( name.equals(categoryEntryTag) )
+        type = CATEGORY_ENTRY_ELEMENT;
+      else if ( categoryElement(name) )
+        type = CATEGORY_ELEMENT;
+      else if ( textElement(name) )
+        type = TEXT_ELEMENT;
+      else
+        type = OTHER_ELEMENT;
+      elementTypes.put(name, type);
+    }
+    return type;
+  }
+
   private  boolean newsItemElement (String name)
   {
     return name.equals(newsTag);
   } 
   private  boolean categoryElement (String name) 
   {
-    
+    String uname = name.toUpperCase();
     for (int i = 0; i < categoryArray.length; i++)
-      if ( (name.toUpperCase()).equals(categoryArray[i]) )
+      if ( uname.equals(categoryArray[i]) )
         return true;
     return false;
   }
 
   private  boolean textElement (String name) 
   {
-    
+    String uname = name.toUpperCase();
     for (int i = 0; i < textArray.length; i++)
-      if ( (name.toUpperCase()).equals(textArray[i]) )
+      if ( uname.equals(textArray[i]) )
         return true;
     return false;
   }
@@ -182,6 +299,7 @@ public class TypeListHandler extends HandlerBase
   public void fatalError (SAXParseException exception)
   {
     error++;
+    fatalErrors++;
     System.err.print("Fatal Error: " +
                    exception.getMessage() +
                    " (" +
@@ -193,7 +311,13 @@ public class TypeListHandler extends HandlerBase
                    ')' + "\n");
   }
 
-
-
+  /**
+   * @return true if a fatal error has been reported, so that the
+   * news items handed to the listener may be incomplete
+   */
+  public boolean hasFatalError ()
+  {
+    return fatalErrors > 0;
+  }
 
 }
@@ -0,0 +1,30 @@
+package tc.tsr;
+
+import tc.dstruct.Probabilities;
+import tc.dstruct.ProbabilityModel;
+import tc.util.Maths;
+
+/**
+ * Score terms by chi-square, which measures the lack of independence between
+ * a term and a category:
+ * 
+ * <pre>
+ *  chi(t, c) = |Tr| [P(t,c)P(^t,^c) - P(t,^c)P(^t,c)]^2 / P(t)P(^t)P(c)P(^c)
+ * </pre>
+ * 
+ * @version <font size=-1>$Id: $</font>
+ * @see TermFilter
+ */
+
+public class ChiSquare extends TermFilter {
+
+	public ChiSquare(ProbabilityModel pm) {
+		super(pm);
+	}
+
+	public double computeLocalTermScore(Probabilities p) {
+		double d = p.tc * p.ntnc - p.tnc * p.ntc;
+		return Maths.safediv(pm.corpusSize * d * d, p.t * (1 - p.t) * p.c
+				* (1 - p.c));
+	}
+}
@@ -33,9 +33,8 @@ public class DocumentFrequency extends TermFilter {
 	 * Implement a method to calculate and return (as a double-precision
 	 * integer) the document frequency for a given term and category.
 	 */
-	public double computeLocalTermScore(String term, String cat) {
-		Probabilities p = pm.getProbabilities(term, cat);
-	    return p.tc * pm.corpusSize;
+	public double computeLocalTermScore(Probabilities p) {
+		return p.tc * pm.corpusSize;
 	}
 
 	/**
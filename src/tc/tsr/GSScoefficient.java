@@ -27,11 +27,19 @@ public class GSScoefficient extends TermFilter
     super(pm);
   }
 
-  public double computeLocalTermScore(String term, String cat){
-    Probabilities p = pm.getProbabilities(term, cat);
+  public double computeLocalTermScore(Probabilities p){
     return (p.tc * p.ntnc) - (p.tnc * p.ntc);
   }
 
+  /**
+   * GSS from document counts: the numerator, n^2 times the score, is
+   * computed exactly
+   */
+  public double computeLocalTermScore(int tc, int t, int c, int n){
+    long ntnc = n - t - c + tc;
+    return ((long) tc * ntnc - (long) (t - tc) * (c - tc)) / ((double) n * n);
+  }
+
 }
       
 // System.err.println(wsp[i].getWord()+"\n p(t)    = "+p.t+"\n p(c)    = "+p.c+"\n p(tc)   = "+p.tc+"\n p(ntc)  = "+p.ntc+"\n p(tnc)  = "+p.tnc+"\n p(ntnc) = "+p.ntnc+"\n IG      = "+Maths.xTimesLog2y(p.tc,   p.tc/(p.t * p.c))+" + "+Maths.xTimesLog2y(p.ntc,  p.ntc/((1-p.t) * p.c))+" + "+Maths.xTimesLog2y(p.tnc,  p.tnc/(p.t * (1-p.c))) +" + "+Maths.xTimesLog2y(p.ntnc, p.ntnc/((1-p.t) * (1-p.c)))+" = "+ig); 
@@ -32,11 +32,17 @@ public class InfoGain extends TermFilter {
 	 * Implement a method to calculate and return (as a double-precision
 	 * integer) the information gain for a given term and category.
 	 */
-	public double computeLocalTermScore(String term, String cat) {
-		Probabilities p = pm.getProbabilities(term, cat);
+	public double computeLocalTermScore(Probabilities p) {
 		return Maths.xTimesLog2y(p.tc, p.tc / (p.t * p.c))
 				+ Maths.xTimesLog2y(p.ntc, p.ntc / ((1 - p.t) * p.c))
 				+ Maths.xTimesLog2y(p.tnc, p.tnc / (p.t * (1 - p.c)))
 				+ Maths.xTimesLog2y(p.ntnc, p.ntnc / ((1 - p.t) * (1 - p.c)));
 	}
+
+	/**
+	 * Compute information gain from document counts (see Maths.infoGain())
+	 */
+	public double computeLocalTermScore(int tc, int t, int c, int n) {
+		return Maths.infoGain(tc, t, c, n);
+	}
 }
@@ -8,12 +8,16 @@ package tc.tsr;
 
 import java.util.Enumeration;
 import tc.dstruct.CorpusList;
+import tc.dstruct.MappedProbabilityModel;
 import tc.dstruct.ParsedText;
 import tc.dstruct.ProbabilityModel;
 import tc.dstruct.StopWordList;
-import tc.dstruct.WordFrequencyPair;
 import tc.dstruct.WordScorePair;
+import tc.induction.CorpusIngester;
+import tc.parser.CorpusCache;
 import tc.parser.NewsParser;
+import tc.util.IOUtil;
+import tc.util.PrintUtil;
 
 /**
  * Parse Reuters file, perform term filtering and print the reduced term set
@@ -22,7 +26,7 @@ import tc.parser.NewsParser;
  * Usage:
  * 
  * <pre>
- *  MakeReducedTermSet corpus_list stopwdlist aggr tf_method categ
+ *  MakeReducedTermSet corpus_list stopwdlist aggr tf_method categ [workers]
  * 
  * SYNOPSIS:
  *   Tokenise each file in corpus_list, remove words in stopwdlist
@@ -34,6 +38,11 @@ import tc.parser.NewsParser;
  *          'dfg': document frequency, global,
  *          'ig': information gain.
  *          'gss': GSS coefficient
+ *          'or': odds ratio
+ *          'chi': chi-square
+ *          'mi': mutual information
+ *          'all': all of the above but 'dfg', computed in a single pass
+ *                 and printed side by side, one column per method.
  * 
  * categ: target category (e.g. 'acq'.) for local term filtering OR
  *          a method for combining local scores. One of:
@@ -41,6 +50,13 @@ import tc.parser.NewsParser;
  *             '_MAX' (maximum local score),
  *             '_SUM' (sum of local scores),
  *             '_WAVG' (sum of local scores wbeighted by category generality.)
+ * 
+ * workers: number of threads used to parse and tokenise corpus_list
+ *          and to compute term scores (default 1).
+ * 
+ * corpus_list may also be a probability model saved in the mapped format
+ * (see MappedProbabilityModel), whose terms are then filtered without
+ * reading the corpus (stopwdlist is then ignored).
  * </pre>
  * 
  * @author Saturnino Luz &#60;luzs@acm.org&#62;
@@ -55,13 +71,15 @@ public class MakeReducedTermSet {
 	private static CorpusList clist = null;
 	private static StopWordList swlist = null;
 	private static int aggressiveness = 0;
+	private static int workers = 1;
 
 	/**
 	 * Set up the main user interface items
 	 */
 	public MakeReducedTermSet(String clist, String swlist, String aggr) {
 		super();
-		this.clist = new CorpusList(clist);
+		if (!MappedProbabilityModel.isMappedModel(clist))
+			this.clist = new CorpusList(clist);
 		this.swlist = new StopWordList(swlist);
 		this.aggressiveness = (new Integer(aggr)).intValue();
 		return;
@@ -77,7 +95,18 @@ public class MakeReducedTermSet {
 		return np.getParsedText();
 	}
 
+	/**
+	 * indexNews: parse filename (or read its tokens from the corpus cache) and
+	 * add each news item to pm as soon as it is read, so that only one news
+	 * item is held in memory at a time
+	 */
+	public void indexNews(String filename, ProbabilityModel pm) {
+		CorpusCache.parse(filename, pm.getIndexer(swlist));
+		PrintUtil.donePrinting();
+	}
+
 	private void computeScores(TermFilter tf, String methodOrCat) {
+		tf.setParallelism(workers);
 		if (methodOrCat.equals("_MAX"))
 			tf.computeGlobalScoresMAX();
 		else if (methodOrCat.equals("_WAVG"))
@@ -90,38 +119,88 @@ public class MakeReducedTermSet {
 			tf.computeLocalScores(methodOrCat);
 	}
 
-	public WordScorePair[] rank(String method, ProbabilityModel pm,
-			String methodOrCat) {
-		System.err.println("Starting filtering...");
-		WordScorePair[] wsp = null;
+	/**
+	 * Make the term filter for method
+	 */
+	private TermFilter getTermFilter(String method, ProbabilityModel pm) {
 		if (method.equals("gss")) {
 			System.err.println("Filtering term set by GSS coefficient.");
-			GSScoefficient tf = new GSScoefficient(pm);
-			computeScores(tf, methodOrCat);
-			wsp = tf.getSortedScores();
+			return new GSScoefficient(pm);
 		} else if (method.equals("or")) {
 			System.err.println("Filtering term set by Odds Ratio");
-			OddsRatio tf = new OddsRatio(pm);
-			computeScores(tf, methodOrCat);
-			wsp = tf.getSortedScores();
+			return new OddsRatio(pm);
 		} else if (method.equals("ig")) {
 			System.err.println("Filtering term set by info gain");
-			InfoGain tf = new InfoGain(pm);
-			computeScores(tf, methodOrCat);
-			wsp = tf.getSortedScores();
+			return new InfoGain(pm);
+		} else if (method.equals("chi")) {
+			System.err.println("Filtering term set by chi-square");
+			return new ChiSquare(pm);
+		} else if (method.equals("mi")) {
+			System.err.println("Filtering term set by mutual information");
+			return new MutualInformation(pm);
 		} else if (method.equals("dfg")) {
 			System.err
 					.println("Filtering term set by document frequency (global)");
-			DocumentFrequency tf = new DocumentFrequency(pm);
-			computeScores(tf, methodOrCat);
-			wsp = tf.getSortedScores();
+			return new DocumentFrequency(pm);
 		} else {
 			System.err.println("Filtering term set by document frequency");
-			DocumentFrequency tf = new DocumentFrequency(pm);
-			computeScores(tf, methodOrCat);
-			wsp = tf.getSortedScores();
+			return new DocumentFrequency(pm);
+		}
+	}
+
+	/**
+	 * Score the term set by method and return it sorted by score, in
+	 * ascending order
+	 */
+	public WordScorePair[] rank(String method, ProbabilityModel pm,
+			String methodOrCat) {
+		System.err.println("Starting filtering...");
+		TermFilter tf = getTermFilter(method, pm);
+		computeScores(tf, methodOrCat);
+		return tf.getSortedScores();
+	}
+
+	/**
+	 * Score the term set by method and return its k highest scoring terms,
+	 * best first
+	 */
+	public WordScorePair[] rank(String method, ProbabilityModel pm,
+			String methodOrCat, int k) {
+		System.err.println("Starting filtering...");
+		TermFilter tf = getTermFilter(method, pm);
+		computeScores(tf, methodOrCat);
+		return tf.getTopScores(k);
+	}
+
+	/**
+	 * Rank the term set by every method in MultiTermFilter.METHODS, computed
+	 * in a single pass over pm, and print the reduced term sets side by side:
+	 * a header naming the methods, followed by one line per rank holding the
+	 * term (and its score) chosen by each method, separated by tabs.
+	 */
+	public void printRankings(ProbabilityModel pm, String methodOrCat) {
+		System.err.println("Filtering term set by "
+				+ MultiTermFilter.METHODS.length + " methods");
+		MultiTermFilter tf = new MultiTermFilter(pm);
+		computeScores(tf, methodOrCat);
+		String[] methods = MultiTermFilter.METHODS;
+		int size = pm.getTermSetSize();
+		int rsize = size / aggressiveness;
+		System.err.println("Reducing T from " + size + " to " + rsize);
+		WordScorePair[][] wsp = new WordScorePair[methods.length][];
+		for (int m = 0; m < methods.length; m++)
+			wsp[m] = tf.getTopScores(m, rsize);
+		StringBuffer line = new StringBuffer();
+		for (int m = 0; m < methods.length; m++)
+			line.append(m == 0 ? "" : "\t").append(methods[m]);
+		System.out.println(line);
+		for (int i = 0; i < rsize; i++) {
+			line.setLength(0);
+			for (int m = 0; m < methods.length; m++)
+				line.append(m == 0 ? "" : "\t").append(wsp[m][i].getWord())
+						.append(" = ").append(wsp[m][i].getScore());
+			System.out.println(line);
 		}
-		return wsp;
 	}
 
 	public static void main(String[] args) {
@@ -130,35 +209,49 @@ public class MakeReducedTermSet {
 					args[2]);
 			String termFilter = args[3];
 			String category = args[4];
-			ProbabilityModel pm = new ProbabilityModel();
-			for (Enumeration e = f.clist.elements(); e.hasMoreElements();) {
-				String fname = (String) e.nextElement();
-				System.err.print("\n----- Processing: " + fname + " ------\n");
-				pm.addParsedText(f.parseNews(fname), swlist);
-			}
+			workers = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+			ProbabilityModel pm = ProbabilityModel.newInstance();
+			if (MappedProbabilityModel.isMappedModel(args[0]))
+				pm = IOUtil.loadProbabilityModel(args[0]);
+			else if (workers > 1)
+				new CorpusIngester(swlist, workers).ingest(clist, pm);
+			else
+				for (Enumeration e = f.clist.elements(); e.hasMoreElements();) {
+					String fname = (String) e.nextElement();
+					System.err.print("\n----- Processing: " + fname
+							+ " ------\n");
+					f.indexNews(fname, pm);
+				}
 			System.err.println("Probability Model size " + pm.getTermSetSize());
-			WordScorePair[] wsp = f.rank(termFilter, pm, category);
+			if (termFilter.equals("all")) {
+				f.printRankings(pm, category);
+				return;
+			}
 			int size = pm.getTermSetSize();
 			int rsize = size / aggressiveness;
-			WordFrequencyPair[] rwfp = new WordFrequencyPair[rsize];
-			int j = 0;
+			WordScorePair[] wsp = f.rank(termFilter, pm, category, rsize);
 			System.err.println("Reducing T from " + size + " to " + rsize);
-			int stop = size - rsize - 1;
-			for (int i = size - 1; i > stop; i--)
+			for (int i = 0; i < rsize; i++)
 				System.out
 						.println(wsp[i].getWord() + " = " + wsp[i].getScore());
 		} catch (Exception e) {
 			System.err
-					.println("\nUsage: MakeReducedTermSet CORPUS_LIST STOPWDLIST AGGRESSIVENESS TF_METHOD CATEG");
+					.println("\nUsage: MakeReducedTermSet CORPUS_LIST STOPWDLIST AGGRESSIVENESS TF_METHOD CATEG [WORKERS]");
 			System.err
 					.println("       tokenise each file in CORPUS_LIST, remove words in STOPWDLIST");
 			System.err
-					.println("       and reduce the term set by a factor of AGGRESSIVENESS.\n");
+					.println("       and reduce the term set by a factor of AGGRESSIVENESS.");
+			System.err
+					.println("       (CORPUS_LIST may also be a mapped probability model.)\n");
 			System.err.println(" TF_METHOD: term filtering method. One of:");
 			System.err.println("            'df' (document frequency),");
 			System.err.println("            'ig' (information gain)");
 			System.err.println("            'gss' (GSS coefficient)");
 			System.err.println("            'or' (Odds ratio)");
+			System.err.println("            'chi' (chi-square)");
+			System.err.println("            'mi' (mutual information)");
+			System.err
+					.println("            'all' (all of the above, side by side)");
 			System.err.println(" CATEG: target category (e.g. 'acq'.) or");
 			System.err
 					.println("    a method for combining local scores. One of:");
@@ -168,6 +261,16 @@ public class MakeReducedTermSet {
 			System.err.println("            '_SUM' (sum of local scores),");
 			System.err
 					.println("            '_WAVG' (sum of local scores wbeighted by category generality),");
+			System.err
+					.println(" WORKERS: number of threads used to parse and tokenise CORPUS_LIST and to");
+			System.err
+					.println("          compute term scores (default 1)");
+			System.err
+					.println(" (run with -Dtc.parser=scan to read CORPUS_LIST with the byte-level Reuters scanner,");
+			System.err
+					.println("  -Dtc.cache=off to bypass the pre-tokenised corpus cache, FILE.tok, or");
+			System.err
+					.println("  -Dtc.cache.dir=DIR to keep it in DIR)");
 			e.printStackTrace();
 		}
 	}
@@ -0,0 +1,77 @@
+package tc.tsr;
+
+import tc.dstruct.Probabilities;
+import tc.dstruct.ProbabilityModel;
+import tc.dstruct.WordScorePair;
+
+/**
+ * Score every term by each of the filters in METHODS at once. The document
+ * counts of each term and category are looked up only once, and passed to
+ * every filter, so ranking the term set by all methods costs about
+ * as much as ranking it by one. Each filter's scores are the same as it
+ * would compute on its own.
+ * 
+ * @version <font size=-1>$Id: $</font>
+ * @see TermFilter
+ */
+
+public class MultiTermFilter extends TermFilter {
+
+	/**
+	 * names (as given to MakeReducedTermSet) of the methods computed, in the
+	 * order in which getSortedScores(int) returns their scores
+	 */
+	public static final String[] METHODS = { "df", "ig", "gss", "or", "chi",
+			"mi" };
+	private TermFilter[] filters;
+
+	public MultiTermFilter(ProbabilityModel pm) {
+		super(pm);
+		filters = new TermFilter[] { new DocumentFrequency(pm),
+				new InfoGain(pm), new GSScoefficient(pm), new OddsRatio(pm),
+				new ChiSquare(pm), new MutualInformation(pm) };
+	}
+
+	/**
+	 * The score of the first method, METHODS[0]
+	 */
+	double computeLocalTermScore(Probabilities p) {
+		return filters[0].computeLocalTermScore(p);
+	}
+
+	/**
+	 * Compute the score of the i-th term for every filter
+	 */
+	void scoreTerm(int i, int f, int[] cats, double[] generality) {
+		int t = pm.getTermId(wsp[i].getWord());
+		int ts = pm.getTermCount(t);
+		double[] score = new double[filters.length];
+		for (int m = 0; m < filters.length; m++)
+			score[m] = f == LOCAL ? 0 : filters[m].wsp[i].getScore();
+		for (int k = 0; k < cats.length; k++) {
+			int tc = jointCount(t, ts, cats[k]);
+			int cs = categoryCount(cats[k]);
+			for (int m = 0; m < filters.length; m++)
+				score[m] = combine(f, score[m], filters[m]
+						.computeLocalTermScore(tc, ts, cs, pm.corpusSize),
+						generality, k);
+		}
+		for (int m = 0; m < filters.length; m++)
+			filters[m].wsp[i].setScore(score[m]);
+		wsp[i].setScore(score[0]);
+	}
+
+	/**
+	 * @return the scores computed by METHODS[m], sorted in ascending order
+	 */
+	public WordScorePair[] getSortedScores(int m) {
+		return filters[m].getSortedScores();
+	}
+
+	/**
+	 * @return the k highest scores computed by METHODS[m], best first
+	 */
+	public WordScorePair[] getTopScores(int m, int k) {
+		return TopKSelector.select(filters[m].wsp, k, parallelism);
+	}
+}
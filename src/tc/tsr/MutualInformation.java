@@ -0,0 +1,29 @@
+package tc.tsr;
+
+import tc.dstruct.Probabilities;
+import tc.dstruct.ProbabilityModel;
+import tc.util.Maths;
+
+/**
+ * Score terms by mutual information:
+ * 
+ * <pre>
+ *  MI(t, c) = log2 P(t,c) / P(t)P(c)
+ * </pre>
+ * 
+ * taken to be 0 if t and c never co-occur.
+ * 
+ * @version <font size=-1>$Id: $</font>
+ * @see TermFilter
+ */
+
+public class MutualInformation extends TermFilter {
+
+	public MutualInformation(ProbabilityModel pm) {
+		super(pm);
+	}
+
+	public double computeLocalTermScore(Probabilities p) {
+		return Maths.safeLog2(p.tc / (p.t * p.c));
+	}
+}
@@ -27,11 +27,20 @@ public class OddsRatio extends TermFilter
     super(pm);
   }
 
-  public double computeLocalTermScore(String term, String cat){
-    Probabilities p = pm.getProbabilities(term, cat);
+  public double computeLocalTermScore(Probabilities p){
     return Maths.safediv(p.getPTgivenC() * (1 - p.getPTgiven_C()),
                          p.getPTgiven_C() * (1 - p.getPTgivenC()));
   }
+
+  /**
+   * Odds ratio from document counts, with p(t|c) = tc/c and p(t|^c) =
+   * (t - tc)/(n - c)
+   */
+  public double computeLocalTermScore(int tc, int t, int c, int n){
+    double ptc = (double) tc / c;
+    double ptnc = (double) (t - tc) / (n - c);
+    return Maths.safediv(ptc * (1 - ptnc), ptnc * (1 - ptc));
+  }
    
 
 }
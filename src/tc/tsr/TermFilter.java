@@ -1,14 +1,17 @@
 package tc.tsr;
 
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import tc.dstruct.BagOfWords;
+import tc.dstruct.Probabilities;
 import tc.dstruct.ProbabilityModel;
 import tc.dstruct.WordFrequencyPair;
 import tc.dstruct.WordScorePair;
-import tc.util.PrintUtil;
+import tc.util.Maths;
+import tc.util.ProgressMeter;
 
 /**
  * Abstract class for term set reduction
@@ -22,6 +25,13 @@ public abstract class TermFilter {
 
 	ProbabilityModel pm;
 	WordScorePair[] wsp = null;
+	/** number of threads used to compute scores (see setParallelism()) */
+	int parallelism = 1;
+
+	/** ways of combining local scores into a term's score */
+	static final int LOCAL = 0, SUM = 1, MAX = 2, WAVG = 3;
+	/** smallest range of terms scored by a single fork/join task */
+	private static final int MIN_TASK_SIZE = 256;
 
 	public TermFilter(ProbabilityModel pm) {
 		this.pm = pm;
@@ -29,9 +39,28 @@ public abstract class TermFilter {
 	}
 
 	/**
-	 * All Term Filters must implement computeLocalTermScore()
+	 * All Term Filters must implement computeLocalTermScore(), which computes
+	 * the score of a term for a category from their joint probabilities, p
 	 */
-	abstract double computeLocalTermScore(String term, String cat);
+	abstract double computeLocalTermScore(Probabilities p);
+
+	/**
+	 * Compute the score of term for category cat
+	 */
+	public double computeLocalTermScore(String term, String cat) {
+		return computeLocalTermScore(pm.getProbabilities(term, cat));
+	}
+
+	/**
+	 * Compute the score of a term for a category from document counts: tc
+	 * documents containing the term and in the category, t documents
+	 * containing the term, c documents in the category, and n documents in
+	 * all. Filters which can compute their scores from the counts directly
+	 * override this, to avoid estimating Probabilities first.
+	 */
+	public double computeLocalTermScore(int tc, int t, int c, int n) {
+		return computeLocalTermScore(Probabilities.fromCounts(tc, t, c, n));
+	}
 
 	/**
 	 * Return a term set reduced by a afctor of aggr
@@ -41,24 +70,27 @@ public abstract class TermFilter {
 	}
 
 	/**
-	 * Sort score table, pick the first n=rsize terms and return their frequency
-	 * list
+	 * Pick the n=rsize highest scoring terms and return their frequency list
 	 */
 	public WordFrequencyPair[] getReducedFreqList(int aggr) {
-		// ***** N.B.: you'll need to change this if you want to implement
-		// this method (should it be implemented here, in the abstract
-		// class? or will it be specific to each TSR method?)
-		Arrays.sort(wsp);
-	    int size = pm.getTermSetSize();
-	    int rsize = size / aggr;
-	    WordFrequencyPair[] rwfp = new WordFrequencyPair[rsize];
-	    int j = 0;
-	    System.err.println("Reducing T from "+size+" to "+rsize);
-	    int stop = size-rsize-1;
-	    for(int i = size-1; i > stop ; i--)
-	      rwfp[j++] = new WordFrequencyPair(wsp[i].getWord(), 
-	                                        pm.getTermCount(wsp[i].getWord()));
-	    return rwfp;
+		int size = pm.getTermSetSize();
+		int rsize = size / aggr;
+		System.err.println("Reducing T from " + size + " to " + rsize);
+		WordScorePair[] top = getTopScores(rsize);
+		WordFrequencyPair[] rwfp = new WordFrequencyPair[rsize];
+		for (int j = 0; j < rsize; j++)
+			rwfp[j] = new WordFrequencyPair(top[j].getWord(), pm
+					.getTermCount(top[j].getWord()));
+		return rwfp;
+	}
+
+	/**
+	 * Return the k highest scoring terms, best first, without sorting the
+	 * whole score table (see TopKSelector). The terms are the last k of
+	 * getSortedScores(), in reverse order.
+	 */
+	public WordScorePair[] getTopScores(int k) {
+		return TopKSelector.select(wsp, k, parallelism);
 	}
 
 	public WordScorePair[] getSortedScores() {
@@ -98,54 +130,183 @@ public abstract class TermFilter {
 		// convert wsp, initially filled with frequencies, into a score
 		// table. (Scores will depend on the particular TSR implementation
 		// that extends this abstract class.)
-		for (int i = 0; i < wsp.length; i++) {
-			PrintUtil.printNoMove("Computing TSR  ...",i);
-			wsp[i].setScore(computeLocalTermScore(wsp[i].getWord(), cat));
-//			System.out.println(wsp[i].getWord()+":"+wsp[i].getScore());
+		computeScores(LOCAL, new String[] { cat });
+	}
+
+	public void computeGlobalScoresSUM() {
+		System.err.println("Computing GLOBAL TSR for " + wsp.length
+				+ " using f_sum");
+		computeScores(SUM, getCategories());
+	}
+
+	public void computeGlobalScoresMAX() {
+		System.err.println("Computing GLOBAL TSR for " + wsp.length
+				+ " using f_max");
+		computeScores(MAX, getCategories());
+	}
+
+	public void computeGlobalScoresWAVG() {
+		System.err.println("Computing GLOBAL TSR for " + wsp.length
+				+ " using f_wavg");
+		computeScores(WAVG, getCategories());
+	}
+
+	/**
+	 * Set the number of threads used to compute scores. With more than one,
+	 * wsp is split into ranges which are scored by a fork/join pool; as each
+	 * term's score is computed from its own local scores only, and in the
+	 * same order, the scores are the same as those computed by a single
+	 * thread.
+	 */
+	public void setParallelism(int v) {
+		this.parallelism = v < 1 ? 1 : v;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @return the categories of the model, in the order in which
+	 *         pm.getCategorySet() iterates over them
+	 */
+	private String[] getCategories() {
+		return pm.getCategorySet().toArray(new String[0]);
+	}
+
+	/**
+	 * Convert wsp, initially filled with frequencies, into a score table,
+	 * combining the local scores for cats by function f (LOCAL, SUM, MAX or
+	 * WAVG)
+	 */
+	private void computeScores(int f, String[] cats) {
+		long start = System.nanoTime();
+		double[] generality = null;
+		if (f == WAVG) {
+			generality = new double[cats.length];
+			for (int k = 0; k < cats.length; k++)
+				generality[k] = pm.getCatGenerality(cats[k]);
 		}
+		int[] ids = new int[cats.length];
+		for (int k = 0; k < cats.length; k++)
+			ids[k] = pm.getCategoryId(cats[k]);
+		Maths.prepareNLog2n(pm.corpusSize);
+		ProgressMeter meter = new ProgressMeter("Computing TSR  ...");
+		if (parallelism > 1) {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				int grain = Math.max(MIN_TASK_SIZE, wsp.length
+						/ (8 * parallelism));
+				pool.invoke(new ScoreTask(0, wsp.length, grain, f, ids,
+						generality, meter));
+			} finally {
+				pool.shutdown();
+			}
+		} else
+			scoreRange(0, wsp.length, f, ids, generality, meter);
+		meter.done();
+		printTime(start);
+	}
+
+	/**
+	 * Compute the scores of wsp[from] to wsp[to-1]
+	 */
+	private void scoreRange(int from, int to, int f, int[] cats,
+			double[] generality, ProgressMeter meter) {
+		for (int i = from; i < to; i++) {
+			scoreTerm(i, f, cats, generality);
+			meter.step();
+		}
+	}
+
+	/**
+	 * Compute the score of wsp[i] (see computeScores())
+	 */
+	void scoreTerm(int i, int f, int[] cats, double[] generality) {
+		int t = pm.getTermId(wsp[i].getWord());
+		int ts = pm.getTermCount(t);
+		double score = f == LOCAL ? 0 : wsp[i].getScore();
+		for (int k = 0; k < cats.length; k++)
+			score = combine(f, score, computeLocalTermScore(jointCount(t, ts,
+					cats[k]), ts, categoryCount(cats[k]), pm.corpusSize),
+					generality, k);
+		wsp[i].setScore(score);
+	}
+
+	/**
+	 * @return number of documents in category c (given by id, or -1 if it
+	 *         isn't in the model)
+	 */
+	int categoryCount(int c) {
+		return c < 0 ? 0 : pm.getCategoryCount(c);
+	}
+
+	/**
+	 * @return number of documents in which term t, which occurs in ts
+	 *         documents, occurs and which are in category c
+	 */
+	int jointCount(int t, int ts, int c) {
+		return c < 0 || ts == 0 ? 0 : pm.getJointCount(t, c);
+	}
+
+	/**
+	 * Combine score, computed from the local scores for the first k
+	 * categories, with s, the local score for the k-th category, by function
+	 * f
+	 */
+	static double combine(int f, double score, double s,
+			double[] generality, int k) {
+		if (f == LOCAL)
+			return s;
+		else if (f == SUM)
+			return score + s;
+		else if (f == MAX)
+			return score > s ? score : s;
+		else
+			return score + generality[k] * s;
+	}
+
+	/**
+	 * Score a range of wsp, splitting it in two until it is no longer than
+	 * grain
+	 */
+	private class ScoreTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private int from, to, grain, f;
+		private int[] cats;
+		private double[] generality;
+		private ProgressMeter meter;
+
+		ScoreTask(int from, int to, int grain, int f, int[] cats,
+				double[] generality, ProgressMeter meter) {
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+			this.f = f;
+			this.cats = cats;
+			this.generality = generality;
+			this.meter = meter;
+		}
+
+		protected void compute() {
+			if (to - from <= grain) {
+				scoreRange(from, to, f, cats, generality, meter);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ScoreTask(from, mid, grain, f, cats, generality,
+					meter), new ScoreTask(mid, to, grain, f, cats, generality,
+					meter));
+		}
+	}
+
+	/**
+	 * Report the time taken to compute the scores, since start (as given by
+	 * System.nanoTime())
+	 */
+	void printTime(long start) {
+		System.err.println("TSR scores computed in "
+				+ (System.nanoTime() - start) / 1000000 + " ms");
 	}
-	public void computeGlobalScoresSUM (){
-	    System.err.println("Computing GLOBAL TSR for "+wsp.length+" using f_sum");
-	    // convert wsp, initially filled with frequencies, into a score table
-	    Set cs = pm.getCategorySet();
-	    for (int i = 0; i < wsp.length; i++) {
-	      PrintUtil.printNoMove("Computing TSR  ...",i);
-	      for (Iterator e = cs.iterator(); e.hasNext() ;)
-	        wsp[i].setScore(wsp[i].getScore() + 
-	                        computeLocalTermScore(wsp[i].getWord(), (String)e.next()));
-	    }
-	    PrintUtil.printNoMove("Computing TSR  ...",wsp.length);
-	    PrintUtil.donePrinting();
-	  }
-
-	  public void computeGlobalScoresMAX (){
-	    System.err.println("Computing GLOBAL TSR for "+wsp.length+" using f_max");
-	    // convert wsp, initially filled with frequencies, into a score table
-	    Set cs = pm.getCategorySet();
-	    for (int i = 0; i < wsp.length; i++) {
-	      PrintUtil.printNoMove("Computing TSR  ...",i);
-	      for (Iterator e = cs.iterator(); e.hasNext() ;){
-	        double s = computeLocalTermScore(wsp[i].getWord(), (String)e.next());
-	        wsp[i].setScore(wsp[i].getScore() > s ? wsp[i].getScore() : s);
-	      }
-	    }
-	    PrintUtil.printNoMove("Computing TSR  ...",wsp.length);
-	    PrintUtil.donePrinting();
-	  }
-
-	  public void computeGlobalScoresWAVG (){
-	    System.err.println("Computing GLOBAL TSR for "+wsp.length+" using f_wavg");
-	    // convert wsp, initially filled with frequencies, into a score table
-	    Set cs = pm.getCategorySet();
-	    for (int i = 0; i < wsp.length; i++) {
-	      PrintUtil.printNoMove("Computing TSR  ...",i);
-	      for (Iterator e = cs.iterator(); e.hasNext() ;){
-	        String cat = (String)e.next(); 
-	        wsp[i].setScore(wsp[i].getScore() + 
-	                        pm.getCatGenerality(cat) *
-	                        computeLocalTermScore(wsp[i].getWord(), cat));
-	      }
-	    }
-	    PrintUtil.donePrinting();
-	  }
 }
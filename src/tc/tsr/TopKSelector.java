@@ -0,0 +1,180 @@
+package tc.tsr;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import tc.dstruct.WordScorePair;
+
+/**
+ * Select the k highest scoring terms of a score table without sorting the
+ * whole table, by keeping the best k seen so far in a bounded heap (O(n log k)
+ * time, rather than O(n log n)).
+ *
+ * Terms are ranked by score (as compared by Double.compare()) and, among
+ * terms with equal scores, by position in the table, later terms first. This
+ * is the order in which they would be read from the end of the table after
+ * sorting it with Arrays.sort(), so the selection is the same as the one
+ * previously made that way.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see TermFilter
+ */
+public class TopKSelector {
+
+	/**
+	 * smallest table split into partitions by select(double[], int, int)
+	 */
+	static final int MIN_PARALLEL_SIZE = 1 << 15;
+
+	/**
+	 * Return the positions of the k highest ranking scores (or of all of
+	 * them if there are fewer than k), best first
+	 */
+	public static int[] select(double[] scores, int k) {
+		return select(scores, 0, scores.length, k);
+	}
+
+	/**
+	 * As select(double[], int), but split scores into up to parallelism
+	 * partitions, select the top k of each on a fork/join pool, and merge
+	 * them. The result is the same as select(double[], int)'s.
+	 */
+	public static int[] select(double[] scores, int k, int parallelism) {
+		if (parallelism < 2 || scores.length < MIN_PARALLEL_SIZE)
+			return select(scores, k);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			int grain = Math.max(MIN_PARALLEL_SIZE / 2, (scores.length
+					+ parallelism - 1)
+					/ parallelism);
+			return pool.invoke(new SelectTask(scores, 0, scores.length, k,
+					grain));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Return the k highest scoring pairs in wsp, best first
+	 */
+	public static WordScorePair[] select(WordScorePair[] wsp, int k,
+			int parallelism) {
+		double[] scores = new double[wsp.length];
+		for (int i = 0; i < wsp.length; i++)
+			scores[i] = wsp[i].getScore();
+		int[] top = select(scores, k, parallelism);
+		WordScorePair[] twsp = new WordScorePair[top.length];
+		for (int i = 0; i < top.length; i++)
+			twsp[i] = wsp[top[i]];
+		return twsp;
+	}
+
+	/**
+	 * Select the top k of scores[from] to scores[to-1]
+	 */
+	static int[] select(double[] s, int from, int to, int k) {
+		if (k > to - from)
+			k = to - from;
+		if (k <= 0)
+			return new int[0];
+		// min-heap: heap[0] is the lowest ranking of the best k so far
+		int[] heap = new int[k];
+		int n = 0;
+		for (int i = from; i < to; i++) {
+			if (n < k) {
+				heap[n] = i;
+				siftUp(s, heap, n++);
+			} else if (ranksAbove(s, i, heap[0])) {
+				heap[0] = i;
+				siftDown(s, heap, 0, k);
+			}
+		}
+		// heap sort, which leaves the best first
+		for (int m = k - 1; m > 0; m--) {
+			int w = heap[0];
+			heap[0] = heap[m];
+			heap[m] = w;
+			siftDown(s, heap, 0, m);
+		}
+		return heap;
+	}
+
+	/**
+	 * @return true if the score at position i ranks above the one at j
+	 */
+	static boolean ranksAbove(double[] s, int i, int j) {
+		int c = Double.compare(s[i], s[j]);
+		return c > 0 || (c == 0 && i > j);
+	}
+
+	private static void siftUp(double[] s, int[] heap, int p) {
+		while (p > 0) {
+			int parent = (p - 1) >>> 1;
+			if (!ranksAbove(s, heap[parent], heap[p]))
+				return;
+			int w = heap[parent];
+			heap[parent] = heap[p];
+			heap[p] = w;
+			p = parent;
+		}
+	}
+
+	private static void siftDown(double[] s, int[] heap, int p, int n) {
+		while (true) {
+			int c = 2 * p + 1;
+			if (c >= n)
+				return;
+			if (c + 1 < n && ranksAbove(s, heap[c], heap[c + 1]))
+				c++;
+			if (!ranksAbove(s, heap[p], heap[c]))
+				return;
+			int w = heap[c];
+			heap[c] = heap[p];
+			heap[p] = w;
+			p = c;
+		}
+	}
+
+	/**
+	 * Merge a and b, both best first, into their top k
+	 */
+	static int[] merge(double[] s, int[] a, int[] b, int k) {
+		int[] m = new int[Math.min(k, a.length + b.length)];
+		int i = 0, j = 0;
+		for (int n = 0; n < m.length; n++)
+			if (j == b.length || (i < a.length && ranksAbove(s, a[i], b[j])))
+				m[n] = a[i++];
+			else
+				m[n] = b[j++];
+		return m;
+	}
+
+	/**
+	 * Select the top k of a range of scores, splitting it in two until it is
+	 * no longer than grain
+	 */
+	private static class SelectTask extends RecursiveTask<int[]> {
+
+		private static final long serialVersionUID = 1L;
+		private double[] s;
+		private int from, to, k, grain;
+
+		SelectTask(double[] s, int from, int to, int k, int grain) {
+			this.s = s;
+			this.from = from;
+			this.to = to;
+			this.k = k;
+			this.grain = grain;
+		}
+
+		protected int[] compute() {
+			if (to - from <= grain)
+				return select(s, from, to, k);
+			int mid = (from + to) >>> 1;
+			SelectTask left = new SelectTask(s, from, mid, k, grain);
+			left.fork();
+			int[] right = new SelectTask(s, mid, to, k, grain).compute();
+			return merge(s, left.join(), right, k);
+		}
+	}
+}
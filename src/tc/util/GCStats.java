@@ -0,0 +1,86 @@
+package tc.util;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+/**
+ *  Garbage collection statistics since a starting point: the number
+ *  of collections and the time spent in them, by collector, and the
+ *  peak occupancy of the old generation (the heap pool whose name
+ *  contains "Old" or "Tenured").
+ *
+ *  Collection times are as reported by the JVM; for concurrent
+ *  collectors they include concurrent phases, not only pauses.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see ProgressMeter
+*/
+public class GCStats {
+
+  private List<GarbageCollectorMXBean> gcs = ManagementFactory.getGarbageCollectorMXBeans();
+  private long[] counts;
+  private long[] times;
+  private MemoryPoolMXBean oldGen = null;
+
+  /**
+   * Start counting from now
+   */
+  public GCStats ()
+  {
+    counts = new long[gcs.size()];
+    times = new long[gcs.size()];
+    for (int i = 0; i < gcs.size(); i++) {
+      counts[i] = gcs.get(i).getCollectionCount();
+      times[i] = gcs.get(i).getCollectionTime();
+    }
+    for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans())
+      if ( p.getType() == MemoryType.HEAP
+           && (p.getName().contains("Old") || p.getName().contains("Tenured")) ) {
+        oldGen = p;
+        p.resetPeakUsage();
+      }
+  }
+
+  /**
+   * @return collections since the start, by all collectors
+   */
+  public long getCollectionCount ()
+  {
+    long n = 0;
+    for (int i = 0; i < gcs.size(); i++)
+      n += gcs.get(i).getCollectionCount() - counts[i];
+    return n;
+  }
+
+  /**
+   * @return milliseconds spent collecting since the start
+   */
+  public long getCollectionTime ()
+  {
+    long n = 0;
+    for (int i = 0; i < gcs.size(); i++)
+      n += gcs.get(i).getCollectionTime() - times[i];
+    return n;
+  }
+
+  /**
+   * @return peak bytes used in the old generation since the start, or
+   * -1 if there is no such pool
+   */
+  public long getOldGenPeak ()
+  {
+    return oldGen == null ? -1 : oldGen.getPeakUsage().getUsed();
+  }
+
+  public String toString ()
+  {
+    StringBuffer sb = new StringBuffer("GC: ");
+    for (int i = 0; i < gcs.size(); i++)
+      sb.append(gcs.get(i).getName()+" "+(gcs.get(i).getCollectionCount() - counts[i])
+                +" collections, "+(gcs.get(i).getCollectionTime() - times[i])+" ms; ");
+    long peak = getOldGenPeak();
+    sb.append("old gen peak "+(peak < 0 ? "n/a" : peak / 1024 + " KB"));
+    return sb.toString();
+  }
+}
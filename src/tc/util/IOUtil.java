@@ -14,10 +14,10 @@ public class IOUtil {
   public static void dumpProbabilityModel (ProbabilityModel pm, String filename) 
   {
     try {
-      FileOutputStream out = new FileOutputStream(filename);
+      OutputStream out = new BufferedOutputStream(new FileOutputStream(filename), 1 << 16);
       ObjectOutputStream s = new ObjectOutputStream(out);
       s.writeObject(pm);
-      s.flush();
+      s.close();
     }
     catch (Exception e){
       System.err.println("Error saving Probability Model"); 
@@ -25,12 +25,38 @@ public class IOUtil {
     }
   }
 
+  /**
+   * Save pm in the format read by MappedProbabilityModel
+   */
+  public static void dumpMappedProbabilityModel (ProbabilityModel pm, String filename) 
+  {
+    try {
+      MappedProbabilityModel.write(pm, filename);
+    }
+    catch (Exception e){
+      System.err.println("Error saving Probability Model"); 
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Load a model saved by dumpProbabilityModel or, if filename holds
+   * a model saved by dumpMappedProbabilityModel, map it into memory
+   * (as a read-only MappedProbabilityModel)
+   */
   public static ProbabilityModel loadProbabilityModel (String filename)
   {
     try {
-      FileInputStream in = new FileInputStream(filename);
+      if ( MappedProbabilityModel.isMappedModel(filename) )
+        return MappedProbabilityModel.open(filename);
+      InputStream in = new BufferedInputStream(new FileInputStream(filename), 1 << 16);
       ObjectInputStream s = new ObjectInputStream(in);
-      return (ProbabilityModel)s.readObject();
+      try {
+        return (ProbabilityModel)s.readObject();
+      }
+      finally {
+        s.close();
+      }
     }
     catch (Exception e){
       System.err.println("Error reading Probability Model");
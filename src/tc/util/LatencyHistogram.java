@@ -0,0 +1,98 @@
+package tc.util;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLong;
+/**
+ *  Histogram of latencies which may be recorded by several threads
+ *  at once, and from which percentiles can be read at any time.
+ *
+ *  Latencies are counted in microseconds, in logarithmic buckets:
+ *  values below 8 have a bucket each, and each power of two above
+ *  that is split into 8 buckets, so a percentile is reported to
+ *  within 12.5% (as the upper bound of its bucket) whatever its
+ *  magnitude, in constant space. Recording a latency is a single
+ *  atomic increment.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see ProgressMeter
+*/
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKETS = 8;
+  private static final int NBUCKETS = 512;
+
+  private AtomicLongArray buckets = new AtomicLongArray(NBUCKETS);
+  private AtomicLong count = new AtomicLong();
+  private AtomicLong max = new AtomicLong();
+
+  /**
+   * Record a latency of nanos nanoseconds
+   */
+  public void record (long nanos)
+  {
+    long us = nanos < 0 ? 0 : nanos / 1000;
+    buckets.incrementAndGet(bucket(us));
+    count.incrementAndGet();
+    long m;
+    while ( us > (m = max.get()) && !max.compareAndSet(m, us) )
+      ;
+  }
+
+  public long getCount ()
+  {
+    return count.get();
+  }
+
+  /**
+   * @return the largest latency recorded, in microseconds
+   */
+  public long getMax ()
+  {
+    return max.get();
+  }
+
+  /**
+   * @return the latency (in microseconds) below which fraction p
+   * (0 &lt;= p &lt;= 1) of the recorded latencies fall, or 0 if none
+   * have been recorded
+   */
+  public long getPercentile (double p)
+  {
+    long[] counts = new long[NBUCKETS];
+    long total = 0;
+    for (int i = 0; i < NBUCKETS; i++)
+      total += counts[i] = buckets.get(i);
+    if ( total == 0 )
+      return 0;
+    long rank = (long) Math.ceil(p * total);
+    if ( rank < 1 )
+      rank = 1;
+    long seen = 0;
+    for (int i = 0; i < NBUCKETS; i++) {
+      seen += counts[i];
+      if ( seen >= rank )
+        return Math.min(upperBound(i), getMax());
+    }
+    return getMax();
+  }
+
+  static int bucket (long us)
+  {
+    if ( us < SUB_BUCKETS )
+      return (int) us;
+    int e = 63 - Long.numberOfLeadingZeros(us);
+    int b = (e - 2) * SUB_BUCKETS + (int) ((us >>> (e - 3)) & (SUB_BUCKETS - 1));
+    return b < NBUCKETS ? b : NBUCKETS - 1;
+  }
+
+  /**
+   * @return the largest value counted in bucket b
+   */
+  static long upperBound (int b)
+  {
+    if ( b < SUB_BUCKETS )
+      return b;
+    int e = b / SUB_BUCKETS + 2;
+    long low = (long) (SUB_BUCKETS + b % SUB_BUCKETS) << (e - 3);
+    return low + (1L << (e - 3)) - 1;
+  }
+}
@@ -8,6 +8,13 @@ package tc.util;
 */
 public class Maths {
 
+  /**
+   * nLog2nTable[k] = k log2 k, for 0 &lt;= k &lt; nLog2nTable.length (see
+   * nLog2n()); replaced by a longer table as needed, so it is never
+   * written once published
+   */
+  private static volatile double[] nLog2nTable = new double[] { 0 };
+
   public static double log2 (double ln) {
     return Math.log(ln)/Math.log(2D);
   }
@@ -27,6 +34,59 @@ public class Maths {
   }
 
 
+  /**
+   * k log2 k for a (document) count k, with 0 log 0 =def 0, looked up
+   * in a table if k is no greater than the last count passed to
+   * prepareNLog2n()
+   */
+  public static double nLog2n (int k) {
+    double[] tbl = nLog2nTable;
+    if (k < tbl.length)
+      return tbl[k];
+    return k == 0 ? 0 : k * log2(k);
+  }
+
+  /**
+   * Tabulate k log2 k for all counts k up to n (e.g. the size of a
+   * corpus)
+   */
+  public static synchronized void prepareNLog2n (int n) {
+    double[] tbl = nLog2nTable;
+    if (n < tbl.length)
+      return;
+    double[] ntbl = new double[n + 1];
+    System.arraycopy(tbl, 0, ntbl, 0, tbl.length);
+    for (int k = tbl.length; k <= n; k++)
+      ntbl[k] = k * log2(k);
+    nLog2nTable = ntbl;
+  }
+
+  /**
+   * Information gain of a term and a category computed from document
+   * counts: tc documents containing the term and in the category, t
+   * documents containing the term, c documents in the category, and n
+   * documents in all. With n_xy the counts of the 2x2 contingency
+   * table and n_x, n_y its marginals,
+   *
+   *   IG = sum_xy (n_xy/n) log2 (n n_xy / n_x n_y)
+   *      = (sum_xy n_xy log2 n_xy - sum_x n_x log2 n_x
+   *          - sum_y n_y log2 n_y + n log2 n) / n
+   *
+   * so that, once prepareNLog2n(n) has been called, IG takes nine table
+   * lookups and a division rather than eight logarithms. The result
+   * differs from the one computed from probabilities with
+   * xTimesLog2y() by rounding only (by less than 1e-12 for corpora of
+   * up to a million documents.)
+   */
+  public static double infoGain (int tc, int t, int c, int n) {
+    if (n == 0)
+      return 0;
+    return (nLog2n(tc) + nLog2n(t - tc) + nLog2n(c - tc) 
+            + nLog2n(n - t - c + tc)
+            - nLog2n(t) - nLog2n(n - t) - nLog2n(c) - nLog2n(n - c)
+            + nLog2n(n)) / n;
+  }
+
   /**
    * Safe  "x * log y"  with 0 log 0 =def 0,  for use computing info theoretic metrics 
    */
@@ -0,0 +1,85 @@
+package tc.util;
+import java.util.concurrent.atomic.AtomicInteger;
+/**
+ *  Progress counter which may be advanced by several threads at once.
+ *
+ *  Like PrintUtil.printNoMove(), it prints a header followed by a
+ *  counter which is overwritten in place, but the counter is an
+ *  AtomicInteger and is only printed every <code>interval</code>
+ *  steps, so that threads advancing it do not queue up on
+ *  System.err.
+ *
+ * @version <font size=-1>$Id: $</font>
+ * @see PrintUtil
+*/
+public class ProgressMeter {
+
+  private String header;
+  private int interval;
+  private AtomicInteger counter = new AtomicInteger();
+  private int prevsize = 0;
+  /** last count printed */
+  private int shown = 0;
+
+  public ProgressMeter (String header)
+  {
+    this(header, 1024);
+  }
+
+  public ProgressMeter (String header, int interval)
+  {
+    this.header = header;
+    this.interval = interval < 1 ? 1 : interval;
+  }
+
+  /**
+   * Advance the counter by one
+   */
+  public void step ()
+  {
+    if (counter.incrementAndGet() % interval == 0)
+      print();
+  }
+
+  /**
+   * Advance the counter by n
+   */
+  public void add (int n)
+  {
+    int c = counter.addAndGet(n);
+    if (c / interval != (c - n) / interval)
+      print();
+  }
+
+  public int getCount ()
+  {
+    return counter.get();
+  }
+
+  /**
+   * Print the final count, followed by "...done"
+   */
+  public synchronized void done ()
+  {
+    print();
+    System.err.println("...done");
+    prevsize = 0;
+  }
+
+  private synchronized void print ()
+  {
+    // another thread may have printed a later count in the meantime
+    int c = counter.get();
+    if (c < shown)
+      return;
+    shown = c;
+    if ( prevsize == 0 )
+      System.err.print(header+c);
+    else {
+      for ( int i = 0; i < prevsize ; i++)
+        System.err.print("\b");
+      System.err.print(c);
+    }
+    prevsize = String.valueOf(c).length();
+  }
+}